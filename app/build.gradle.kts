@@ -42,7 +42,14 @@ dependencies {
     androidTestImplementation(libs.espresso.core)
     implementation("com.github.bumptech.glide:glide:4.16.0")
     annotationProcessor("com.github.bumptech.glide:compiler:4.16.0")
+    implementation("com.github.bumptech.glide:recyclerview-integration:4.16.0") {
+        isTransitive = false
+    }
+    // Full-screen pager
+    implementation("androidx.viewpager2:viewpager2:1.1.0")
     // Room components
     implementation ("androidx.room:room-runtime:2.6.1")
     annotationProcessor ("androidx.room:room-compiler:2.6.1")
+    // Observable queries (LiveData return types on DAOs)
+    implementation ("androidx.lifecycle:lifecycle-livedata:2.8.7")
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.example.midterm;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Everything ImageAdapter binds from, as one immutable value. Background loads build
+// ImageDetails blocks and the main thread swaps in a new snapshot with the block added,
+// so a bind sees either the old or the new state and never takes a lock.
+//
+// Details are kept per position block of the current list, so adding a block copies only
+// the small block index, not every row. On a list change the loaded details are flattened
+// into a by-uri map once, so rows that survive the change keep their text until their
+// block reloads.
+final class AdapterSnapshot {
+    // Rows of details carried over from earlier lists; beyond this only the latest are kept
+    private static final int MAX_CARRIED = 5000;
+
+    static final AdapterSnapshot EMPTY = new AdapterSnapshot(Collections.emptyList(), null,
+            Collections.emptyMap(), Collections.emptyMap());
+
+    // The list the differ last committed. GalleryPagedList fills its own pages, but is
+    // safe to read from any thread.
+    final List<Uri> uris;
+    // What uris was loaded from, handed to the full-screen pager; null if unknown
+    @Nullable final Selection selection;
+    private final Map<Integer, Map<Uri, ImageDetails>> blocks;
+    private final Map<Uri, ImageDetails> carried;
+
+    private AdapterSnapshot(List<Uri> uris, @Nullable Selection selection,
+                            Map<Integer, Map<Uri, ImageDetails>> blocks, Map<Uri, ImageDetails> carried) {
+        this.uris = uris;
+        this.selection = selection;
+        this.blocks = blocks;
+        this.carried = carried;
+    }
+
+    AdapterSnapshot withList(List<Uri> newUris, @Nullable Selection newSelection) {
+        Map<Uri, ImageDetails> nextCarried = new HashMap<>();
+        int loaded = 0;
+        for (Map<Uri, ImageDetails> block : blocks.values()) {
+            loaded += block.size();
+        }
+        if (carried.size() + loaded <= MAX_CARRIED) {
+            nextCarried.putAll(carried);
+        }
+        for (Map<Uri, ImageDetails> block : blocks.values()) {
+            nextCarried.putAll(block);
+        }
+        return new AdapterSnapshot(newUris, newSelection, Collections.emptyMap(), Collections.unmodifiableMap(nextCarried));
+    }
+
+    AdapterSnapshot withBlock(int block, Map<Uri, ImageDetails> details) {
+        Map<Integer, Map<Uri, ImageDetails>> nextBlocks = new HashMap<>(blocks);
+        nextBlocks.put(block, Collections.unmodifiableMap(details));
+        return new AdapterSnapshot(uris, selection, Collections.unmodifiableMap(nextBlocks), carried);
+    }
+
+    @Nullable
+    ImageDetails details(int position, Uri uri) {
+        Map<Uri, ImageDetails> block = blocks.get(position / ImageAdapter.TAG_BLOCK_SIZE);
+        ImageDetails details = block != null ? block.get(uri) : null;
+        return details != null ? details : carried.get(uri);
+    }
+}
@@ -2,23 +2,59 @@ package com.example.midterm;
 
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+// Rows of AlbumDao.observeAlbumSummaries(). Also its own preload provider, so the covers of
+// rows about to scroll in are decoded with the same request the bind will make.
+public class AlbumAdapter extends ListAdapter<AlbumSummary, AlbumAdapter.AlbumViewHolder>
+        implements ListPreloader.PreloadModelProvider<Uri>, ListPreloader.PreloadSizeProvider<Uri> {
+    private static final DiffUtil.ItemCallback<AlbumSummary> DIFF = new DiffUtil.ItemCallback<AlbumSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AlbumSummary a, @NonNull AlbumSummary b) {
+            return a.id == b.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AlbumSummary a, @NonNull AlbumSummary b) {
+            return a.photoCount == b.photoCount
+                    && Objects.equals(a.name, b.name)
+                    && Objects.equals(a.coverUri, b.coverUri)
+                    && Objects.equals(a.lastModified, b.lastModified);
+        }
+    };
 
-public class AlbumAdapter extends RecyclerView.Adapter<AlbumAdapter.AlbumViewHolder> {
     private final Context context;
-    private final List<Album> albums;
+    private final int coverSize;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy", Locale.getDefault());
 
-    public AlbumAdapter(Context context, List<Album> albums) {
+    public AlbumAdapter(Context context) {
+        super(DIFF);
         this.context = context;
-        this.albums = albums;
+        // item_album.xml cover is 64dp square
+        this.coverSize = Math.round(64 * context.getResources().getDisplayMetrics().density);
     }
 
     @NonNull
@@ -30,8 +66,17 @@ public class AlbumAdapter extends RecyclerView.Adapter<AlbumAdapter.AlbumViewHol
 
     @Override
     public void onBindViewHolder(@NonNull AlbumViewHolder holder, int position) {
-        Album album = albums.get(position);
+        AlbumSummary album = getItem(position);
         holder.albumName.setText(album.name);
+        holder.albumInfo.setText(infoText(album));
+
+        Uri cover = coverOf(album);
+        if (cover != null) {
+            ImageRequests.thumbnail(context, cover, coverSize, coverSize).into(holder.cover);
+        } else {
+            Glide.with(context).clear(holder.cover);
+            holder.cover.setImageResource(R.drawable.ic_placeholder);
+        }
 
         holder.itemView.setOnClickListener(v -> {
             Intent intent = new Intent(context, AlbumDetailActivity.class);
@@ -42,15 +87,51 @@ public class AlbumAdapter extends RecyclerView.Adapter<AlbumAdapter.AlbumViewHol
     }
 
     @Override
-    public int getItemCount() {
-        return albums.size();
+    public void onViewRecycled(@NonNull AlbumViewHolder holder) {
+        super.onViewRecycled(holder);
+        Glide.with(context).clear(holder.cover);
+    }
+
+    @NonNull
+    @Override
+    public List<Uri> getPreloadItems(int position) {
+        if (position < 0 || position >= getItemCount()) return Collections.emptyList();
+        Uri cover = coverOf(getItem(position));
+        return cover != null ? Collections.singletonList(cover) : Collections.emptyList();
+    }
+
+    @Nullable
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(@NonNull Uri uri) {
+        return ImageRequests.thumbnail(context, uri, coverSize, coverSize);
+    }
+
+    @Nullable
+    @Override
+    public int[] getPreloadSize(@NonNull Uri item, int adapterPosition, int perItemPosition) {
+        return new int[]{coverSize, coverSize};
+    }
+
+    @Nullable
+    private static Uri coverOf(AlbumSummary album) {
+        return album.coverUri != null ? Uri.parse(album.coverUri) : null;
+    }
+
+    private String infoText(AlbumSummary album) {
+        String count = album.photoCount == 1 ? "1 photo" : album.photoCount + " photos";
+        if (album.lastModified == null) return count;
+        return count + " · Updated " + dateFormat.format(new Date(album.lastModified));
     }
 
     static class AlbumViewHolder extends RecyclerView.ViewHolder {
+        ImageView cover;
         TextView albumName;
+        TextView albumInfo;
         public AlbumViewHolder(@NonNull View itemView) {
             super(itemView);
+            cover = itemView.findViewById(R.id.imageAlbumCover);
             albumName = itemView.findViewById(R.id.textAlbumName);
+            albumInfo = itemView.findViewById(R.id.textAlbumInfo);
         }
     }
 }
@@ -1,22 +1,72 @@
 package com.example.midterm;
 
+import androidx.lifecycle.LiveData;
+import androidx.room.ColumnInfo;
 import androidx.room.Dao;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 
 import java.util.List;
 
 @Dao
 public interface AlbumDao {
+    // One album membership by album name, for TagBitmapIndex
+    class AlbumUri {
+        @ColumnInfo(name = "album_name")
+        public String albumName;
+
+        @ColumnInfo(name = "uri")
+        public String uri;
+    }
+
     @Insert
-    void insert(Album album);
+    long insert(Album album);
 
-    @Query("SELECT * FROM Album")
+    @Query("SELECT * FROM Album ORDER BY name COLLATE NOCASE")
     List<Album> getAllAlbums();
 
+    @Query("SELECT * FROM Album ORDER BY name COLLATE NOCASE")
+    LiveData<List<Album>> observeAllAlbums();
+
+    // Every album with its count, cover and last change in one grouped pass over AlbumPhoto.
+    // With a single max() aggregate SQLite takes the bare AlbumPhoto.uri from the row holding
+    // the maximum, so the cover is the most recently added photo without a per-album subquery.
+    @Query("SELECT Album.id, Album.name, COUNT(AlbumPhoto.uri) AS photo_count, " +
+            "MAX(AlbumPhoto.added_at) AS last_modified, AlbumPhoto.uri AS cover_uri " +
+            "FROM Album LEFT JOIN AlbumPhoto ON AlbumPhoto.album_id = Album.id " +
+            "GROUP BY Album.id ORDER BY Album.name COLLATE NOCASE")
+    LiveData<List<AlbumSummary>> observeAlbumSummaries();
+
+    @Query("SELECT * FROM Album WHERE name = :name LIMIT 1")
+    Album getAlbumByName(String name);
+
     @Query("DELETE FROM Album WHERE id = :id")
     void deleteById(int id);
 
     @Query("UPDATE Album SET name = :newName WHERE id = :albumId")
     void renameAlbum(int albumId, String newName);
+
+    // Returns -1 when the photo is already in the album
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long addPhoto(AlbumPhoto albumPhoto);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void addPhotos(List<AlbumPhoto> albumPhotos);
+
+    @Query("SELECT uri FROM AlbumPhoto WHERE album_id = :albumId ORDER BY added_at, rowid")
+    List<String> getPhotoUris(int albumId);
+
+    @Query("SELECT uri FROM AlbumPhoto WHERE album_id = :albumId ORDER BY added_at, rowid")
+    LiveData<List<String>> observePhotoUris(int albumId);
+
+    @Query("SELECT uri FROM AlbumPhoto WHERE album_id = :albumId ORDER BY added_at, rowid LIMIT :limit OFFSET :offset")
+    List<String> getPhotoUrisPage(int albumId, int limit, int offset);
+
+    @Query("SELECT Album.name AS album_name, AlbumPhoto.uri FROM AlbumPhoto " +
+            "INNER JOIN Album ON Album.id = AlbumPhoto.album_id")
+    List<AlbumUri> getAllAlbumUris();
+
+    @Query("SELECT COUNT(*) FROM AlbumPhoto WHERE album_id = :albumId")
+    int countPhotos(int albumId);
 }
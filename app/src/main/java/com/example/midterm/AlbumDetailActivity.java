@@ -13,9 +13,9 @@ import java.util.List;
 public class AlbumDetailActivity extends AppCompatActivity {
     RecyclerView recyclerViewPhotos;
     TextView textAlbumTitle;
-    PhotoDao photoDao;
+    AlbumDao albumDao;
     ImageAdapter imageAdapter;
-    List<Photo> photos;
+    List<String> uriStrings;
     int albumId;
 
     @Override
@@ -27,7 +27,7 @@ public class AlbumDetailActivity extends AppCompatActivity {
         textAlbumTitle = findViewById(R.id.textAlbumTitle);
 
         AppDatabase db = AppDatabase.getDatabase(this);
-        photoDao = db.photoDao();
+        albumDao = db.albumDao();
 
         albumId = getIntent().getIntExtra("albumId", -1);
         String albumName = getIntent().getStringExtra("albumName");
@@ -39,15 +39,19 @@ public class AlbumDetailActivity extends AppCompatActivity {
     }
 
     private void loadPhotos() {
-        photos = photoDao.getPhotosInAlbum(albumId);
-
-        // Convert List<Photo> → List<Uri>
-        List<Uri> photoUris = new ArrayList<>();
-        for (Photo p : photos) {
-            photoUris.add(Uri.parse(p.uri));
-        }
-
-        imageAdapter = new ImageAdapter(this, photoUris);
+        imageAdapter = new ImageAdapter(this, new ArrayList<>());
         recyclerViewPhotos.setAdapter(imageAdapter);
+
+        // Query runs on Room's executor and re-emits whenever the album's membership changes
+        albumDao.observePhotoUris(albumId).observe(this, uris -> {
+            uriStrings = uris;
+
+            // Convert List<String> → List<Uri>
+            List<Uri> photoUris = new ArrayList<>();
+            for (String uri : uriStrings) {
+                photoUris.add(Uri.parse(uri));
+            }
+            imageAdapter.updateData(photoUris, Selection.album(albumId));
+        });
     }
 }
@@ -0,0 +1,40 @@
+package com.example.midterm;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+
+// Every album with its cover, size and last change. The whole list comes from one grouped
+// query, so opening the screen costs one pass over AlbumPhoto however many albums there are.
+public class AlbumListActivity extends AppCompatActivity {
+    // Covers are small; warm the next screenful ahead of the scroll
+    private static final int PRELOAD_ROWS = 10;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_album_list);
+
+        RecyclerView recyclerView = findViewById(R.id.recyclerViewAlbums);
+        TextView textNoAlbums = findViewById(R.id.textNoAlbums);
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+
+        AlbumAdapter adapter = new AlbumAdapter(this);
+        recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(
+                new RecyclerViewPreloader<>(Glide.with(this), adapter, adapter, PRELOAD_ROWS));
+
+        // Re-emits after any album or membership change, diffed so unchanged rows keep their covers
+        AppDatabase.getDatabase(this).albumDao().observeAlbumSummaries().observe(this, albums -> {
+            adapter.submitList(albums);
+            textNoAlbums.setVisibility(albums.isEmpty() ? View.VISIBLE : View.GONE);
+        });
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.midterm;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+// Album membership: one row per photo in an album, so adding or removing a photo
+// touches a single row instead of rewriting the whole album
+@Entity(tableName = "AlbumPhoto",
+        primaryKeys = {"album_id", "uri"},
+        foreignKeys = @ForeignKey(entity = Album.class,
+                parentColumns = "id",
+                childColumns = "album_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"uri"})})
+public class AlbumPhoto {
+    @ColumnInfo(name = "album_id")
+    public int albumId;
+
+    @NonNull
+    @ColumnInfo(name = "uri")
+    public String uri;
+
+    @ColumnInfo(name = "added_at")
+    public long addedAt;
+
+    public AlbumPhoto(int albumId, @NonNull String uri, long addedAt) {
+        this.albumId = albumId;
+        this.uri = uri;
+        this.addedAt = addedAt;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// One-time move of albums from the legacy "PhotoAlbums" SharedPreferences file
+// (album name -> comma-joined uris) into the Album/AlbumPhoto tables.
+// The prefs file is cleared once the rows are committed, so later launches skip it.
+public class AlbumPrefsImporter {
+    private static final String TAG = "AlbumPrefsImporter";
+    private static final String PREFS_NAME = "PhotoAlbums";
+    private static final String ALL_PHOTOS = "All Photos";
+
+    public static void importIfNeeded(Context context, AppDatabase db) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Map<String, ?> all = prefs.getAll();
+        if (all.isEmpty()) {
+            return;
+        }
+
+        try {
+            db.runInTransaction(() -> {
+                AlbumDao albumDao = db.albumDao();
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, ?> entry : all.entrySet()) {
+                    String name = entry.getKey();
+                    if (name.equals(ALL_PHOTOS) || !(entry.getValue() instanceof String)) {
+                        continue;
+                    }
+
+                    Album album = albumDao.getAlbumByName(name);
+                    int albumId = album != null ? album.id : (int) albumDao.insert(new Album(name));
+
+                    // Keep the original order by spacing added_at one millisecond apart
+                    List<AlbumPhoto> photos = new ArrayList<>();
+                    for (String uri : ((String) entry.getValue()).split(",")) {
+                        if (!uri.isEmpty()) {
+                            photos.add(new AlbumPhoto(albumId, uri, now + photos.size()));
+                        }
+                    }
+                    albumDao.addPhotos(photos);
+                }
+            });
+            prefs.edit().clear().commit();
+            Log.d(TAG, "Imported " + all.size() + " albums from SharedPreferences");
+        } catch (Exception e) {
+            Log.e(TAG, "Error importing albums from SharedPreferences", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.midterm;
+
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+
+// One row of AlbumDao.observeAlbumSummaries(): an album with its size, newest photo
+// (used as the cover) and when a photo was last added
+public class AlbumSummary {
+    public int id;
+    public String name;
+
+    @ColumnInfo(name = "photo_count")
+    public int photoCount;
+
+    // Null for an empty album
+    @Nullable
+    @ColumnInfo(name = "cover_uri")
+    public String coverUri;
+
+    // Epoch millis of the latest AlbumPhoto.added_at; null for an empty album
+    @Nullable
+    @ColumnInfo(name = "last_modified")
+    public Long lastModified;
+}
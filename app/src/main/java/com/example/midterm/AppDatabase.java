@@ -1,27 +1,186 @@
 package com.example.midterm;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {Album.class, Photo.class}, version = 1)
+import java.util.ArrayList;
+import java.util.List;
+
+@Database(entities = {Album.class, Photo.class, PhotoTag.class, PhotoFts.class,
+        AlbumPhoto.class, MediaMetadata.class, PhotoHash.class}, version = 8)
 public abstract class AppDatabase extends RoomDatabase {
     private static AppDatabase instance;
 
     public abstract AlbumDao albumDao();
     public abstract PhotoDao photoDao();
+    public abstract PhotoTagDao photoTagDao();
+    public abstract MediaMetadataDao mediaMetadataDao();
+    public abstract PhotoHashDao photoHashDao();
+
+    // v2: tags move from the comma-joined Photo.tag column into the indexed PhotoTag table
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `PhotoTag` (`photo_id` INTEGER NOT NULL, " +
+                    "`tag_key` TEXT NOT NULL, `tag` TEXT NOT NULL, PRIMARY KEY(`photo_id`, `tag_key`), " +
+                    "FOREIGN KEY(`photo_id`) REFERENCES `Photo`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_PhotoTag_tag_key_photo_id` ON `PhotoTag` (`tag_key`, `photo_id`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_Photo_uri` ON `Photo` (`uri`)");
+
+            try (Cursor cursor = db.query("SELECT id, tag FROM Photo WHERE tag IS NOT NULL AND tag != ''")) {
+                while (cursor.moveToNext()) {
+                    int photoId = cursor.getInt(0);
+                    for (String tag : PhotoTag.split(cursor.getString(1))) {
+                        ContentValues values = new ContentValues();
+                        values.put("photo_id", photoId);
+                        values.put("tag_key", PhotoTag.normalize(tag));
+                        values.put("tag", tag);
+                        db.insert("PhotoTag", SQLiteDatabase.CONFLICT_IGNORE, values);
+                    }
+                }
+            }
+        }
+    };
+
+    // v3: FTS4 index over Photo.tag plus the content sync triggers Room would create
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `PhotoFts` USING FTS4(`tag` TEXT, " +
+                    "tokenize=unicode61, content=`Photo`)");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_PhotoFts_BEFORE_UPDATE " +
+                    "BEFORE UPDATE ON `Photo` BEGIN DELETE FROM `PhotoFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_PhotoFts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `Photo` BEGIN DELETE FROM `PhotoFts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_PhotoFts_AFTER_UPDATE " +
+                    "AFTER UPDATE ON `Photo` BEGIN INSERT INTO `PhotoFts`(`docid`, `tag`) " +
+                    "VALUES (NEW.`rowid`, NEW.`tag`); END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_PhotoFts_AFTER_INSERT " +
+                    "AFTER INSERT ON `Photo` BEGIN INSERT INTO `PhotoFts`(`docid`, `tag`) " +
+                    "VALUES (NEW.`rowid`, NEW.`tag`); END");
+            db.execSQL("INSERT INTO `PhotoFts`(`PhotoFts`) VALUES('rebuild')");
+        }
+    };
+
+    // v4: album membership table replacing the SharedPreferences uri lists
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `AlbumPhoto` (`album_id` INTEGER NOT NULL, " +
+                    "`uri` TEXT NOT NULL, `added_at` INTEGER NOT NULL, PRIMARY KEY(`album_id`, `uri`), " +
+                    "FOREIGN KEY(`album_id`) REFERENCES `Album`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_AlbumPhoto_uri` ON `AlbumPhoto` (`uri`)");
+        }
+    };
+
+    // v5: MediaStore metadata mirror, filled by GalleryIndex on its next scan
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `MediaMetadata` (`media_id` INTEGER NOT NULL, " +
+                    "`display_name` TEXT, `date_taken` INTEGER NOT NULL, `date_added` INTEGER NOT NULL, " +
+                    "`date_modified` INTEGER NOT NULL, `size` INTEGER NOT NULL, `width` INTEGER NOT NULL, " +
+                    "`height` INTEGER NOT NULL, `mime_type` TEXT, `bucket_id` INTEGER NOT NULL, " +
+                    "`bucket_name` TEXT, `indexed_at` INTEGER NOT NULL, PRIMARY KEY(`media_id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_MediaMetadata_date_taken` ON `MediaMetadata` (`date_taken`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_MediaMetadata_bucket_id` ON `MediaMetadata` (`bucket_id`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_MediaMetadata_indexed_at` ON `MediaMetadata` (`indexed_at`)");
+        }
+    };
+
+    // v6: perceptual hashes per MediaStore image, filled in the background by DuplicateIndex
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `PhotoHash` (`media_id` INTEGER NOT NULL, " +
+                    "`date_modified` INTEGER NOT NULL, `dhash` INTEGER NOT NULL, `phash` INTEGER NOT NULL, " +
+                    "`decoded` INTEGER NOT NULL, PRIMARY KEY(`media_id`), " +
+                    "FOREIGN KEY(`media_id`) REFERENCES `MediaMetadata`(`media_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    // v7: visual feature vectors next to the hashes. Existing rows are marked stale so the
+    // next hashing pass decodes them once more and fills both.
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `PhotoHash` ADD COLUMN `features` BLOB");
+            db.execSQL("UPDATE `PhotoHash` SET `date_modified` = -1");
+        }
+    };
+
+    // v8: Photo.uri becomes unique. Rows created twice for one uri are merged into the
+    // oldest: its tags are the union, and Photo.tag is rebuilt from them for PhotoFts.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            String keepers = "SELECT MIN(id) AS id, uri FROM Photo WHERE uri IS NOT NULL GROUP BY uri";
+            String duplicates = "SELECT id FROM Photo WHERE uri IS NOT NULL AND id NOT IN " +
+                    "(SELECT MIN(id) FROM Photo WHERE uri IS NOT NULL GROUP BY uri)";
+            List<Integer> merged = new ArrayList<>();
+            try (Cursor cursor = db.query("SELECT DISTINCT keeper.id FROM Photo " +
+                    "INNER JOIN (" + keepers + ") keeper ON keeper.uri = Photo.uri " +
+                    "WHERE Photo.id != keeper.id")) {
+                while (cursor.moveToNext()) {
+                    merged.add(cursor.getInt(0));
+                }
+            }
+            if (!merged.isEmpty()) {
+                db.execSQL("INSERT OR IGNORE INTO `PhotoTag` (`photo_id`, `tag_key`, `tag`) " +
+                        "SELECT keeper.id, PhotoTag.tag_key, PhotoTag.tag FROM PhotoTag " +
+                        "INNER JOIN Photo ON Photo.id = PhotoTag.photo_id " +
+                        "INNER JOIN (" + keepers + ") keeper ON keeper.uri = Photo.uri " +
+                        "WHERE Photo.id != keeper.id ORDER BY PhotoTag.rowid");
+                db.execSQL("DELETE FROM `PhotoTag` WHERE `photo_id` IN (" + duplicates + ")");
+                db.execSQL("DELETE FROM `Photo` WHERE `id` IN (" + duplicates + ")");
+                for (int photoId : merged) {
+                    List<String> tags = new ArrayList<>();
+                    try (Cursor cursor = db.query("SELECT tag FROM PhotoTag WHERE photo_id = ? ORDER BY rowid",
+                            new Object[]{photoId})) {
+                        while (cursor.moveToNext()) {
+                            tags.add(cursor.getString(0));
+                        }
+                    }
+                    db.execSQL("UPDATE `Photo` SET `tag` = ? WHERE `id` = ?",
+                            new Object[]{PhotoTag.join(tags), photoId});
+                }
+            }
+            db.execSQL("DROP INDEX IF EXISTS `index_Photo_uri`");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_Photo_uri` ON `Photo` (`uri`)");
+        }
+    };
 
     public static synchronized AppDatabase getDatabase(Context context) {
         if (instance == null) {
-            instance = Room.databaseBuilder(context.getApplicationContext(),
+            RoomDatabase.Builder<AppDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
                             AppDatabase.class, "photo_gallery_db")
-                    .allowMainThreadQueries()
-                    .fallbackToDestructiveMigration()
-                    .build();
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4,
+                            MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8)
+                    .fallbackToDestructiveMigration();
+
+            // Debug builds fail fast on any statement issued from the UI thread, including
+            // raw queries that bypass Room's own DAO check. The direct executor runs the
+            // callback on the thread that executed the statement.
+            if ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+                builder.setQueryCallback((sql, bindArgs) -> {
+                    if (Looper.myLooper() == Looper.getMainLooper()) {
+                        throw new IllegalStateException("Database query on the main thread: " + sql);
+                    }
+                }, Runnable::run);
+            }
+            instance = builder.build();
         }
         return instance;
     }
 }
-
@@ -0,0 +1,539 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.ViewParent;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.widget.AppCompatImageView;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Zoomable image view for full-resolution photos. The drawable set through Glide is the
+// screen-sized base layer; once the zoom goes past its resolution, the visible part of the
+// original is decoded in TILE_SIZE tiles with BitmapRegionDecoder at the matching power-of-two
+// sample size and drawn on top. Tiles live in a byte-bounded LRU shared by all instances,
+// so memory stays flat whatever the source resolution is. A tile is named by one long (source,
+// sample size, column, row) so drawing a frame allocates nothing.
+public class DeepZoomImageView extends AppCompatImageView {
+    private static final String TAG = "DeepZoomImageView";
+    private static final int TILE_SIZE = 512;
+    private static final float MAX_ZOOM = 4f; // screen px per source px
+    private static final float DOUBLE_TAP_ZOOM = 3f; // relative to fit
+
+    // Tile keys: source id in the high 32 bits, then log2 of the sample size and 14 bits each
+    // of column and row
+    private static final int TILE_INDEX_BITS = 14;
+    private static final int TILE_INDEX_MASK = (1 << TILE_INDEX_BITS) - 1;
+
+    private static final LruCache<TileKey, Bitmap> tileCache =
+            new LruCache<TileKey, Bitmap>((int) Math.min(Runtime.getRuntime().maxMemory() / 6, 64L * 1024 * 1024)) {
+                @Override
+                protected int sizeOf(TileKey key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+    // Main thread only. Small ids for the sources seen so far, so tiles of a photo paged
+    // back to are still cached.
+    private static final Map<Uri, Integer> sourceIds = new HashMap<>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Region decodes serialize on the decoder's lock anyway; one queue per view also orders
+    // the final recycle() after any decode still in progress
+    private final TaskScheduler.SerialQueue tileQueue = TaskScheduler.serial(TaskScheduler.Lane.VISIBLE);
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // Source (un-rotated) size from the decoder, and the EXIF rotation applied on screen
+    private int sourceWidth;
+    private int sourceHeight;
+    private int rotation;
+    private BitmapRegionDecoder decoder;
+    private Uri sourceUri;
+    private int sourceId;
+    // Bumped on every new source so late decoder/tile results are dropped
+    private int generation;
+
+    // Oriented image space -> view: uniform scale plus translation
+    private float scale;
+    private float translateX;
+    private float translateY;
+    private boolean userTransformed;
+
+    // Source space -> oriented image space (EXIF rotation)
+    private final Matrix orientationMatrix = new Matrix();
+    private final Matrix drawMatrix = new Matrix();
+    private final Matrix inverseMatrix = new Matrix();
+    private final RectF visibleRect = new RectF();
+    private final Rect tileRect = new Rect();
+    // Cache probe reused by every lookup; only put() stores a key object
+    private final TileKey tileProbe = new TileKey(0);
+    // Tiles the current frame is missing, reused from frame to frame
+    private long[] missingTiles = new long[16];
+    // Tiles the current frame shows, replaced only when that range changes; decodes that
+    // fall out of it are skipped
+    private volatile TileRange wantedTiles = TileRange.NONE;
+    private final LongSparseArray<Boolean> pendingTiles = new LongSparseArray<>();
+
+    public DeepZoomImageView(Context context) {
+        this(context, null);
+    }
+
+    public DeepZoomImageView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        scaleDetector = new ScaleGestureDetector(context, new ScaleListener());
+        gestureDetector = new GestureDetector(context, new GestureListener());
+    }
+
+    // Opens the original for tiling. The base layer still comes from setImageDrawable (Glide).
+    public void setImageSource(@Nullable Uri uri) {
+        if (uri != null && uri.equals(sourceUri)) return;
+        releaseDecoder();
+        sourceUri = uri;
+        userTransformed = false;
+        if (uri == null) return;
+        Integer id = sourceIds.get(uri);
+        if (id == null) {
+            id = sourceIds.size();
+            sourceIds.put(uri, id);
+        }
+        sourceId = id;
+
+        int requestGeneration = generation;
+        Context context = getContext().getApplicationContext();
+        tileQueue.execute(this, () -> {
+            try {
+                int orientation;
+                try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+                    orientation = in != null
+                            ? new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)
+                            : ExifInterface.ORIENTATION_NORMAL;
+                }
+                BitmapRegionDecoder regionDecoder;
+                try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+                    if (in == null) return;
+                    regionDecoder = BitmapRegionDecoder.newInstance(in, false);
+                }
+                int degrees = rotationOf(orientation);
+                mainHandler.post(() -> {
+                    if (requestGeneration != generation) {
+                        regionDecoder.recycle();
+                        return;
+                    }
+                    decoder = regionDecoder;
+                    sourceWidth = regionDecoder.getWidth();
+                    sourceHeight = regionDecoder.getHeight();
+                    rotation = degrees;
+                    updateOrientationMatrix();
+                    if (!userTransformed) resetToFit();
+                    invalidate();
+                });
+            } catch (Exception e) {
+                // Formats BitmapRegionDecoder can't read (e.g. GIF) just stay at base resolution
+                Log.w(TAG, "No region decoder for " + uri, e);
+            }
+        });
+    }
+
+    public void releaseDecoder() {
+        generation++;
+        wantedTiles = TileRange.NONE;
+        pendingTiles.clear();
+        TaskScheduler.cancelAll(this);
+        if (decoder != null) {
+            BitmapRegionDecoder old = decoder;
+            tileQueue.execute(old::recycle);
+            decoder = null;
+        }
+        sourceWidth = 0;
+        sourceHeight = 0;
+        rotation = 0;
+        orientationMatrix.reset();
+    }
+
+    public boolean isZoomed() {
+        return scale > fitScale() * 1.01f;
+    }
+
+    public void resetZoom() {
+        userTransformed = false;
+        resetToFit();
+        invalidate();
+    }
+
+    @Override
+    public void setImageDrawable(@Nullable Drawable drawable) {
+        super.setImageDrawable(drawable);
+        if (!userTransformed) resetToFit();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        userTransformed = false;
+        resetToFit();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        releaseDecoder();
+        sourceUri = null;
+    }
+
+    // Oriented size of the image: the original once known, else the base drawable
+    private int imageWidth() {
+        if (sourceWidth > 0) return rotation % 180 == 0 ? sourceWidth : sourceHeight;
+        Drawable d = getDrawable();
+        return d != null ? d.getIntrinsicWidth() : 0;
+    }
+
+    private int imageHeight() {
+        if (sourceHeight > 0) return rotation % 180 == 0 ? sourceHeight : sourceWidth;
+        Drawable d = getDrawable();
+        return d != null ? d.getIntrinsicHeight() : 0;
+    }
+
+    private float fitScale() {
+        int iw = imageWidth();
+        int ih = imageHeight();
+        if (iw <= 0 || ih <= 0 || getWidth() == 0 || getHeight() == 0) return 1f;
+        return Math.min((float) getWidth() / iw, (float) getHeight() / ih);
+    }
+
+    private float maxScale() {
+        return Math.max(fitScale(), MAX_ZOOM);
+    }
+
+    private void resetToFit() {
+        scale = fitScale();
+        translateX = (getWidth() - imageWidth() * scale) / 2f;
+        translateY = (getHeight() - imageHeight() * scale) / 2f;
+    }
+
+    private void clampTranslation() {
+        float contentWidth = imageWidth() * scale;
+        float contentHeight = imageHeight() * scale;
+        translateX = contentWidth <= getWidth()
+                ? (getWidth() - contentWidth) / 2f
+                : Math.min(0, Math.max(getWidth() - contentWidth, translateX));
+        translateY = contentHeight <= getHeight()
+                ? (getHeight() - contentHeight) / 2f
+                : Math.min(0, Math.max(getHeight() - contentHeight, translateY));
+    }
+
+    private void updateOrientationMatrix() {
+        orientationMatrix.reset();
+        orientationMatrix.postRotate(rotation);
+        switch (rotation) {
+            case 90:
+                orientationMatrix.postTranslate(sourceHeight, 0);
+                break;
+            case 180:
+                orientationMatrix.postTranslate(sourceWidth, sourceHeight);
+                break;
+            case 270:
+                orientationMatrix.postTranslate(0, sourceWidth);
+                break;
+        }
+    }
+
+    private static int rotationOf(int exifOrientation) {
+        switch (exifOrientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        Drawable base = getDrawable();
+        int iw = imageWidth();
+        int ih = imageHeight();
+        if (base == null || iw <= 0 || ih <= 0) return;
+
+        canvas.save();
+        canvas.translate(translateX, translateY);
+        canvas.scale(scale, scale);
+        // Base layer stretched over the full oriented image, whatever its decoded size
+        base.setBounds(0, 0, iw, ih);
+        base.draw(canvas);
+        canvas.restore();
+
+        drawTiles(canvas, base);
+    }
+
+    private void drawTiles(Canvas canvas, Drawable base) {
+        if (decoder == null) return;
+        // Base resolution in base px per source px; tiles only pay off beyond it
+        float baseResolution = (float) base.getIntrinsicWidth() / imageWidth();
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1f) {
+            sampleSize *= 2;
+        }
+        if (1f / sampleSize <= baseResolution * 1.05f) {
+            wantedTiles = TileRange.NONE;
+            return;
+        }
+
+        // View rect -> source rect
+        drawMatrix.set(orientationMatrix);
+        drawMatrix.postScale(scale, scale);
+        drawMatrix.postTranslate(translateX, translateY);
+        if (!drawMatrix.invert(inverseMatrix)) return;
+        visibleRect.set(0, 0, getWidth(), getHeight());
+        inverseMatrix.mapRect(visibleRect);
+
+        int tileSourceSize = TILE_SIZE * sampleSize;
+        int firstCol = Math.max(0, (int) (visibleRect.left / tileSourceSize));
+        int lastCol = Math.min((sourceWidth - 1) / tileSourceSize, (int) (visibleRect.right / tileSourceSize));
+        int firstRow = Math.max(0, (int) (visibleRect.top / tileSourceSize));
+        int lastRow = Math.min((sourceHeight - 1) / tileSourceSize, (int) (visibleRect.bottom / tileSourceSize));
+
+        int sampleShift = Integer.numberOfTrailingZeros(sampleSize);
+        int missingCount = 0;
+        canvas.save();
+        canvas.concat(drawMatrix);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                long key = tileKey(sourceId, sampleShift, col, row);
+                tileProbe.value = key;
+                Bitmap tile = tileCache.get(tileProbe);
+                if (tile != null) {
+                    tileRegion(tileRect, col, row, tileSourceSize);
+                    canvas.drawBitmap(tile, null, tileRect, tilePaint);
+                } else {
+                    if (missingCount == missingTiles.length) {
+                        missingTiles = Arrays.copyOf(missingTiles, missingCount * 2);
+                    }
+                    missingTiles[missingCount++] = key;
+                }
+            }
+        }
+        canvas.restore();
+
+        // Publish before queueing so the decode-time check sees this frame's tiles
+        if (!wantedTiles.matches(sourceId, sampleSize, firstCol, lastCol, firstRow, lastRow)) {
+            wantedTiles = new TileRange(sourceId, sampleSize, firstCol, lastCol, firstRow, lastRow);
+        }
+        for (int i = 0; i < missingCount; i++) {
+            requestTile(missingTiles[i], sampleSize, tileSourceSize);
+        }
+    }
+
+    private void tileRegion(Rect out, int col, int row, int tileSourceSize) {
+        out.set(col * tileSourceSize, row * tileSourceSize,
+                Math.min(sourceWidth, (col + 1) * tileSourceSize),
+                Math.min(sourceHeight, (row + 1) * tileSourceSize));
+    }
+
+    private static long tileKey(int sourceId, int sampleShift, int col, int row) {
+        return ((long) sourceId << 32) | ((long) sampleShift << (2 * TILE_INDEX_BITS))
+                | ((long) col << TILE_INDEX_BITS) | row;
+    }
+
+    private void requestTile(long key, int sampleSize, int tileSourceSize) {
+        if (pendingTiles.indexOfKey(key) >= 0) return;
+        pendingTiles.put(key, Boolean.TRUE);
+        int col = (int) (key >>> TILE_INDEX_BITS) & TILE_INDEX_MASK;
+        int row = (int) key & TILE_INDEX_MASK;
+        Rect region = new Rect();
+        tileRegion(region, col, row, tileSourceSize);
+        BitmapRegionDecoder regionDecoder = decoder;
+        Uri requestUri = sourceUri;
+        int requestSourceId = sourceId;
+        int requestGeneration = generation;
+        tileQueue.execute(this, () -> {
+            Bitmap tile = null;
+            // Panned or zoomed past it before its turn came
+            if (wantedTiles.contains(requestSourceId, sampleSize, col, row)) {
+                try {
+                    BitmapFactory.Options options = new BitmapFactory.Options();
+                    options.inSampleSize = sampleSize;
+                    // Zoom is where quality shows; tiles are never reduced to RGB_565
+                    options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+                    tile = regionDecoder.decodeRegion(region, options);
+                } catch (Exception e) {
+                    Log.w(TAG, "Tile decode failed: " + region + " of " + requestUri, e);
+                }
+            }
+            Bitmap decoded = tile;
+            mainHandler.post(() -> {
+                if (requestGeneration != generation) return;
+                pendingTiles.remove(key);
+                if (decoded != null) {
+                    tileCache.put(new TileKey(key), decoded);
+                    invalidate();
+                }
+            });
+        });
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (getDrawable() == null) return super.onTouchEvent(event);
+        scaleDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            // Keep pans inside the image from turning into pager swipes
+            requestParentDisallowIntercept(isZoomed());
+        }
+        return true;
+    }
+
+    private void requestParentDisallowIntercept(boolean disallow) {
+        ViewParent parent = getParent();
+        if (parent != null) {
+            parent.requestDisallowInterceptTouchEvent(disallow);
+        }
+    }
+
+    @Override
+    public boolean canScrollHorizontally(int direction) {
+        if (!isZoomed()) return false;
+        float contentWidth = imageWidth() * scale;
+        return direction < 0 ? translateX < 0 : translateX > getWidth() - contentWidth;
+    }
+
+    private class ScaleListener extends ScaleGestureDetector.SimpleOnScaleGestureListener {
+        @Override
+        public boolean onScale(@NonNull ScaleGestureDetector detector) {
+            float newScale = Math.max(fitScale(), Math.min(maxScale(), scale * detector.getScaleFactor()));
+            float factor = newScale / scale;
+            translateX = detector.getFocusX() - (detector.getFocusX() - translateX) * factor;
+            translateY = detector.getFocusY() - (detector.getFocusY() - translateY) * factor;
+            scale = newScale;
+            userTransformed = true;
+            clampTranslation();
+            requestParentDisallowIntercept(true);
+            invalidate();
+            return true;
+        }
+    }
+
+    private class GestureListener extends GestureDetector.SimpleOnGestureListener {
+        @Override
+        public boolean onDown(@NonNull MotionEvent e) {
+            return true;
+        }
+
+        @Override
+        public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2, float distanceX, float distanceY) {
+            if (!isZoomed()) return false;
+            // At the edge, hand horizontal drags back to the pager
+            if (!canScrollHorizontally((int) Math.signum(distanceX)) && Math.abs(distanceX) > Math.abs(distanceY)) {
+                requestParentDisallowIntercept(false);
+                return false;
+            }
+            translateX -= distanceX;
+            translateY -= distanceY;
+            clampTranslation();
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public boolean onDoubleTap(@NonNull MotionEvent e) {
+            if (isZoomed()) {
+                resetZoom();
+                return true;
+            }
+            float newScale = Math.min(maxScale(), fitScale() * DOUBLE_TAP_ZOOM);
+            float factor = newScale / scale;
+            translateX = e.getX() - (e.getX() - translateX) * factor;
+            translateY = e.getY() - (e.getY() - translateY) * factor;
+            scale = newScale;
+            userTransformed = true;
+            clampTranslation();
+            invalidate();
+            return true;
+        }
+
+        @Override
+        public boolean onSingleTapConfirmed(@NonNull MotionEvent e) {
+            return performClick();
+        }
+    }
+
+    // Mutable only so drawTiles can probe the cache without allocating; keys held by the
+    // cache are never changed
+    private static final class TileKey {
+        long value;
+
+        TileKey(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof TileKey && ((TileKey) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(value);
+        }
+    }
+
+    // Source, sample size and column/row bounds of the tiles one frame shows
+    private static final class TileRange {
+        static final TileRange NONE = new TileRange(-1, 0, 0, -1, 0, -1);
+
+        final int sourceId;
+        final int sampleSize;
+        final int firstCol;
+        final int lastCol;
+        final int firstRow;
+        final int lastRow;
+
+        TileRange(int sourceId, int sampleSize, int firstCol, int lastCol, int firstRow, int lastRow) {
+            this.sourceId = sourceId;
+            this.sampleSize = sampleSize;
+            this.firstCol = firstCol;
+            this.lastCol = lastCol;
+            this.firstRow = firstRow;
+            this.lastRow = lastRow;
+        }
+
+        boolean matches(int sourceId, int sampleSize, int firstCol, int lastCol, int firstRow, int lastRow) {
+            return this.sourceId == sourceId && this.sampleSize == sampleSize
+                    && this.firstCol == firstCol && this.lastCol == lastCol
+                    && this.firstRow == firstRow && this.lastRow == lastRow;
+        }
+
+        boolean contains(int sourceId, int sampleSize, int col, int row) {
+            return this.sourceId == sourceId && this.sampleSize == sampleSize
+                    && col >= firstCol && col <= lastCol && row >= firstRow && row <= lastRow;
+        }
+    }
+}
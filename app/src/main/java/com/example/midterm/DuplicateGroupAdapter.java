@@ -0,0 +1,139 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Duplicate groups laid out on a grid: a full-width title row per group, then its photos.
+// Tapping a photo opens the pager over just that group.
+public class DuplicateGroupAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+    private static final int VIEW_TYPE_HEADER = 0;
+    private static final int VIEW_TYPE_PHOTO = 1;
+
+    private final Context context;
+    private final int spanCount;
+    private final int cellSize;
+    // Flattened rows: for each group its title (photo == -1), then one row per photo
+    private final List<Row> rows = new ArrayList<>();
+
+    private static final class Row {
+        final long[] group;
+        final int groupNumber;
+        // Index into group, or -1 for the title row
+        final int photo;
+
+        Row(long[] group, int groupNumber, int photo) {
+            this.group = group;
+            this.groupNumber = groupNumber;
+            this.photo = photo;
+        }
+    }
+
+    public DuplicateGroupAdapter(Context context, int spanCount) {
+        this.context = context;
+        this.spanCount = spanCount;
+        // item_duplicate_photo.xml is 120dp tall; a square decode at that size covers the crop
+        this.cellSize = Math.round(120 * context.getResources().getDisplayMetrics().density);
+    }
+
+    public void setGroups(List<long[]> groups) {
+        rows.clear();
+        for (int g = 0; g < groups.size(); g++) {
+            long[] group = groups.get(g);
+            rows.add(new Row(group, g + 1, -1));
+            for (int i = 0; i < group.length; i++) {
+                rows.add(new Row(group, g + 1, i));
+            }
+        }
+        notifyDataSetChanged();
+    }
+
+    // Title rows take the whole width
+    public GridLayoutManager.SpanSizeLookup spanSizeLookup() {
+        return new GridLayoutManager.SpanSizeLookup() {
+            @Override
+            public int getSpanSize(int position) {
+                return getItemViewType(position) == VIEW_TYPE_HEADER ? spanCount : 1;
+            }
+        };
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return rows.get(position).photo < 0 ? VIEW_TYPE_HEADER : VIEW_TYPE_PHOTO;
+    }
+
+    @NonNull
+    @Override
+    public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        LayoutInflater inflater = LayoutInflater.from(context);
+        if (viewType == VIEW_TYPE_HEADER) {
+            return new HeaderViewHolder(inflater.inflate(R.layout.item_duplicate_header, parent, false));
+        }
+        return new PhotoViewHolder(inflater.inflate(R.layout.item_duplicate_photo, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        Row row = rows.get(position);
+        if (holder instanceof HeaderViewHolder) {
+            ((HeaderViewHolder) holder).title.setText(
+                    "Group " + row.groupNumber + " · " + row.group.length + " photos");
+            return;
+        }
+
+        Uri uri = Selection.uriOf(row.group[row.photo]);
+        ImageView image = ((PhotoViewHolder) holder).image;
+        ImageRequests.thumbnail(context, uri, cellSize, cellSize).into(image);
+        image.setOnClickListener(v -> {
+            Intent intent = new Intent(context, FullScreenActivity.class);
+            intent.putExtra("imageUri", uri.toString());
+            intent.putExtra(FullScreenActivity.EXTRA_POSITION, row.photo);
+            SelectionRegistry.putInto(intent, Selection.ofIds(row.group));
+            context.startActivity(intent);
+        });
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (holder instanceof PhotoViewHolder) {
+            Glide.with(context).clear(((PhotoViewHolder) holder).image);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    static class HeaderViewHolder extends RecyclerView.ViewHolder {
+        TextView title;
+        HeaderViewHolder(@NonNull View itemView) {
+            super(itemView);
+            title = itemView.findViewById(R.id.textGroupTitle);
+        }
+    }
+
+    static class PhotoViewHolder extends RecyclerView.ViewHolder {
+        ImageView image;
+        PhotoViewHolder(@NonNull View itemView) {
+            super(itemView);
+            image = itemView.findViewById(R.id.imageDuplicate);
+        }
+    }
+}
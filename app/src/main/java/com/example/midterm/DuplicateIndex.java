@@ -0,0 +1,247 @@
+package com.example.midterm;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Finds near-duplicate photos (burst shots, re-downloads, resized copies).
+//
+// Hashing runs in the background: every image in the MediaMetadata mirror gets a dHash,
+// a pHash and a VisualFeatures vector (for SimilarityIndex) from one tiny decode, written
+// to PhotoHash one batch per task. The pending set is a query
+// against the mirror, so a pass that is interrupted (process death, a new gallery sync)
+// resumes where it stopped, and each GalleryIndex change only costs the new or edited files.
+//
+// Grouping buckets every pHash in a MultiIndexHash and only compares images that share a
+// bucket, which finds every pair within PHASH_RADIUS without the all-pairs comparison.
+// Candidates must also agree on dHash, which filters out images that merely share a
+// low-frequency layout.
+public class DuplicateIndex {
+    private static final String TAG = "DuplicateIndex";
+    private static final int HASH_BATCH_SIZE = 100;
+    // Bit distances, out of 64, below which two images count as the same picture
+    static final int PHASH_RADIUS = MultiIndexHash.MAX_RADIUS;
+    static final int DHASH_RADIUS = 12;
+
+    public interface Listener {
+        // Main thread; hashed is how many images can take part in grouping so far, and
+        // changed is whether this pass has written any rows yet
+        void onHashingProgress(int hashed, boolean finished, boolean changed);
+    }
+
+    private static DuplicateIndex instance;
+
+    private final ContentResolver resolver;
+    private final PhotoHashDao hashDao;
+    private final TaskScheduler.SerialQueue hashQueue = TaskScheduler.serial(TaskScheduler.Lane.BACKGROUND);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final GalleryIndex galleryIndex;
+    // Main thread only
+    private boolean started = false;
+    private boolean passScheduled = false;
+    // Hash queue only
+    private boolean passRunning = false;
+    private int hashedThisPass;
+    private int hashedCount;
+
+    private DuplicateIndex(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.resolver = appContext.getContentResolver();
+        this.hashDao = AppDatabase.getDatabase(appContext).photoHashDao();
+        this.galleryIndex = GalleryIndex.get(appContext);
+    }
+
+    public static synchronized DuplicateIndex get(Context context) {
+        if (instance == null) {
+            instance = new DuplicateIndex(context);
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Starts hashing and re-runs it after every gallery change; safe to call repeatedly (main thread)
+    public void ensureStarted() {
+        if (started) return;
+        started = true;
+        galleryIndex.ensureBuilt();
+        galleryIndex.addListener(snapshot -> schedulePass());
+        schedulePass();
+    }
+
+    private void schedulePass() {
+        if (passScheduled) return;
+        passScheduled = true;
+        hashQueue.execute(() -> {
+            mainHandler.post(() -> passScheduled = false);
+            startPass();
+        });
+    }
+
+    // Hash queue. A pass already running re-reads the pending set before every batch, so it
+    // picks up whatever the gallery change behind this request added.
+    private void startPass() {
+        if (passRunning) return;
+        passRunning = true;
+        hashedThisPass = 0;
+        // Counted once per pass; batches keep it current in memory
+        hashedCount = hashDao.countHashed();
+        hashNextBatch();
+    }
+
+    // Hash queue. One batch per task: the next batch is queued behind whatever else was
+    // submitted to the single BACKGROUND thread meanwhile, so gallery syncs, grouping and
+    // similarity rebuilds run between batches instead of after the whole pass.
+    private void hashNextBatch() {
+        List<PhotoHashDao.Pending> pending = hashDao.getPending(HASH_BATCH_SIZE);
+        if (pending.isEmpty()) {
+            finishPass();
+            return;
+        }
+
+        List<PhotoHash> rows = new ArrayList<>(pending.size());
+        int newlyDecoded = 0;
+        for (PhotoHashDao.Pending item : pending) {
+            PhotoHash row = hash(item);
+            rows.add(row);
+            newlyDecoded += (row.decoded ? 1 : 0) - (item.wasDecoded ? 1 : 0);
+        }
+        try {
+            hashDao.upsertAll(rows);
+        } catch (Exception e) {
+            Log.w(TAG, "Error storing hashes", e);
+            finishPass();
+            return;
+        }
+        hashedThisPass += rows.size();
+        hashedCount += newlyDecoded;
+        notifyProgress(hashedCount, false, true);
+        hashQueue.execute(this::hashNextBatch);
+    }
+
+    private void finishPass() {
+        passRunning = false;
+        if (hashedThisPass > 0) {
+            Log.d(TAG, "Hashed " + hashedThisPass + " images");
+        }
+        notifyProgress(hashedCount, true, hashedThisPass > 0);
+    }
+
+    private PhotoHash hash(PhotoHashDao.Pending item) {
+        PhotoHash row = new PhotoHash();
+        row.mediaId = item.mediaId;
+        row.dateModified = item.dateModified;
+        Bitmap bitmap = PerceptualHash.decodeSmall(resolver, Selection.uriOf(item.mediaId));
+        if (bitmap != null) {
+            row.dHash = PerceptualHash.dHash(bitmap);
+            row.pHash = PerceptualHash.pHash(bitmap);
+            row.features = VisualFeatures.extract(bitmap);
+            row.decoded = true;
+            bitmap.recycle();
+        }
+        return row;
+    }
+
+    private void notifyProgress(int hashed, boolean finished, boolean changed) {
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onHashingProgress(hashed, finished, changed);
+            }
+        });
+    }
+
+    // Groups of near-identical images, largest first, each as MediaStore ids sorted newest
+    // id first, over what has been hashed so far (worker thread)
+    public List<long[]> findGroups() {
+        List<PhotoHash> rows = hashDao.getAllHashed();
+        int n = rows.size();
+        long[] ids = new long[n];
+        long[] pHashes = new long[n];
+        long[] dHashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            PhotoHash row = rows.get(i);
+            ids[i] = row.mediaId;
+            pHashes[i] = row.pHash;
+            dHashes[i] = row.dHash;
+        }
+        return group(ids, pHashes, dHashes);
+    }
+
+    // Links every pair within PHASH_RADIUS on pHash and DHASH_RADIUS on dHash, then returns
+    // the connected sets of two or more ids. The three arrays are parallel.
+    static List<long[]> group(long[] ids, long[] pHashes, long[] dHashes) {
+        int n = ids.length;
+        // Union-find over row indexes
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++) parent[i] = i;
+        new MultiIndexHash(pHashes).forEachPair(PHASH_RADIUS, (a, b, distance) -> {
+            if (find(parent, a) == find(parent, b)) return;
+            if (PerceptualHash.distance(dHashes[a], dHashes[b]) <= DHASH_RADIUS) {
+                union(parent, a, b);
+            }
+        });
+        if (TaskScheduler.isCancelled()) return new ArrayList<>();
+
+        Map<Integer, List<Long>> byRoot = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            List<Long> members = byRoot.get(root);
+            if (members == null) {
+                members = new ArrayList<>(2);
+                byRoot.put(root, members);
+            }
+            members.add(ids[i]);
+        }
+
+        List<long[]> groups = new ArrayList<>();
+        for (List<Long> members : byRoot.values()) {
+            if (members.size() < 2) continue;
+            long[] group = new long[members.size()];
+            for (int i = 0; i < group.length; i++) group[i] = members.get(i);
+            Arrays.sort(group);
+            // Newest (highest MediaStore id) first, usually the copy worth keeping
+            for (int i = 0, j = group.length - 1; i < j; i++, j--) {
+                long t = group[i];
+                group[i] = group[j];
+                group[j] = t;
+            }
+            groups.add(group);
+        }
+        groups.sort((a, b) -> a.length != b.length ? Integer.compare(b.length, a.length)
+                : Long.compare(b[0], a[0]));
+        return groups;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.midterm;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.List;
+
+// Groups of near-identical photos from DuplicateIndex. Grouping only reads stored hashes,
+// so the screen shows what has been hashed so far and regroups whenever a hashing pass
+// writes new hashes. Grouping runs on the BACKGROUND lane, behind any pass in progress.
+public class DuplicatesActivity extends AppCompatActivity {
+    private static final String TAG = "DuplicatesActivity";
+    private static final int SPAN_COUNT = 3;
+
+    private TextView textStatus;
+    private DuplicateGroupAdapter adapter;
+    private DuplicateIndex duplicateIndex;
+    private final RequestGeneration groupGeneration = new RequestGeneration();
+    private int hashedCount = -1;
+
+    private final DuplicateIndex.Listener progressListener = (hashed, finished, changed) -> {
+        hashedCount = hashed;
+        if (finished) {
+            // A pass that found nothing new leaves the groups on screen as they are
+            if (changed) loadGroups();
+        } else {
+            textStatus.setText("Hashing photos… " + hashed + " done");
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_duplicates);
+
+        textStatus = findViewById(R.id.textDuplicateStatus);
+        RecyclerView recyclerView = findViewById(R.id.recyclerViewDuplicates);
+        adapter = new DuplicateGroupAdapter(this, SPAN_COUNT);
+        GridLayoutManager layoutManager = new GridLayoutManager(this, SPAN_COUNT);
+        layoutManager.setSpanSizeLookup(adapter.spanSizeLookup());
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setAdapter(adapter);
+
+        duplicateIndex = DuplicateIndex.get(this);
+        duplicateIndex.addListener(progressListener);
+        duplicateIndex.ensureStarted();
+        textStatus.setText("Looking for duplicates…");
+        loadGroups();
+    }
+
+    private void loadGroups() {
+        RequestGeneration.Token token = groupGeneration.next();
+        TaskScheduler.execute(TaskScheduler.Lane.BACKGROUND, token, () -> {
+            long start = System.nanoTime();
+            List<long[]> groups = duplicateIndex.findGroups();
+            Log.d(TAG, "Grouped in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            runOnUiThread(() -> {
+                if (!token.isCurrent()) return;
+                adapter.setGroups(groups);
+                int photos = 0;
+                for (long[] group : groups) photos += group.length;
+                String status = groups.isEmpty()
+                        ? "No duplicates found"
+                        : groups.size() + " groups · " + photos + " photos";
+                if (hashedCount >= 0) status += " (" + hashedCount + " photos checked)";
+                textStatus.setText(status);
+            });
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        duplicateIndex.removeListener(progressListener);
+        groupGeneration.next();
+    }
+}
@@ -1,92 +1,257 @@
 package com.example.midterm;
 
+import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.LruCache;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AutoCompleteTextView;
 import android.widget.Button;
-import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.viewpager2.widget.ViewPager2;
 
 import com.bumptech.glide.Glide;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public class FullScreenActivity extends AppCompatActivity {
-    private ImageView imageView;
+    public static final String EXTRA_POSITION = "position";
+    // The photo on screen when the state was saved; EXTRA_POSITION is its page
+    private static final String STATE_CURRENT_URI = "currentUri";
+    // Neighbours whose Photo row and tags are read ahead of a swipe
+    private static final int PREFETCH_DISTANCE = 1;
+
+    private ViewPager2 viewPager;
     private Button btnAddTag;
+    private Button btnFindSimilar;
     private LinearLayout tagsContainer;
     private Uri currentUri;
     private PhotoDao photoDao;
-    private ExecutorService executorService;
+    private PhotoTagDao photoTagDao;
     private Photo currentPhoto;
+    private SlideSource source;
+    private PageAdapter pageAdapter;
+    private LiveData<List<String>> observedTags;
+    // Photo rows and tags for the current page and its neighbours, keyed by uri
+    private final LruCache<String, Photo> photoCache = new LruCache<>(8);
+    private final LruCache<String, List<String>> tagCache = new LruCache<>(8);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_full_screen);
 
-        imageView = findViewById(R.id.imageViewFullScreen);
+        viewPager = findViewById(R.id.viewPagerFullScreen);
         btnAddTag = findViewById(R.id.btnAddTag);
+        btnFindSimilar = findViewById(R.id.btnFindSimilar);
         tagsContainer = findViewById(R.id.tagsContainer);
 
         // Initialize database
         AppDatabase db = AppDatabase.getDatabase(this);
         photoDao = db.photoDao();
-        executorService = Executors.newSingleThreadExecutor();
+        photoTagDao = db.photoTagDao();
 
         String uriString = getIntent().getStringExtra("imageUri");
-        if (uriString != null) {
-            currentUri = Uri.parse(uriString);
-            Glide.with(this)
-                    .load(currentUri)
-                    .into(imageView);
-            loadPhotoTags();
-        } else {
+        if (uriString == null) {
             Toast.makeText(this, "Error loading image", Toast.LENGTH_SHORT).show();
             finish();
+            return;
+        }
+        Uri openedUri = Uri.parse(uriString);
+        int position = getIntent().getIntExtra(EXTRA_POSITION, 0);
+        // After a swipe the restored page shows another photo than the one tapped
+        String savedUri = savedInstanceState != null ? savedInstanceState.getString(STATE_CURRENT_URI) : null;
+        if (savedUri != null) {
+            openedUri = Uri.parse(savedUri);
+            position = savedInstanceState.getInt(EXTRA_POSITION);
         }
 
+        // The pager lays out the page on each side, so Glide decodes the neighbours
+        // at screen size before they are swiped in
+        viewPager.setOffscreenPageLimit(1);
+        viewPager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                showPage(position);
+            }
+        });
+
+        Selection selection = SelectionRegistry.from(getIntent());
+        openSource(selection != null ? selection.openSlideSource(this) : null, openedUri, position);
+
         btnAddTag.setOnClickListener(v -> showAddTagDialog());
+        btnFindSimilar.setOnClickListener(v -> openSimilarPhotos());
+        // Builds the similarity tree in the background while the photo is being looked at,
+        // so Find Similar only pays for the query
+        SimilarityIndex.get(this);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (currentUri != null) {
+            outState.putInt(EXTRA_POSITION, viewPager.getCurrentItem());
+            outState.putString(STATE_CURRENT_URI, currentUri.toString());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        TaskScheduler.cancelAll(this);
+        if (source != null) {
+            source.release();
+        }
+    }
+
+    // Pages through the sender's selection. If it can't be read, or it moved on and no
+    // longer has the tapped photo at that position, the pager shows just that photo.
+    private void openSource(SlideSource selectionSource, Uri openedUri, int position) {
+        if (selectionSource == null) {
+            openSingle(openedUri);
+            return;
+        }
+        selectionSource.open(() -> selectionSource.get(position, uri -> {
+            if (isDestroyed()) return;
+            if (!isSamePhoto(uri, openedUri)) {
+                selectionSource.release();
+                openSingle(openedUri);
+                return;
+            }
+            attachSource(selectionSource, position);
+        }));
+    }
+
+    private static boolean isSamePhoto(Uri a, Uri b) {
+        if (a == null || b == null) return false;
+        long id = MediaMetadata.mediaIdOf(a);
+        return id != -1 ? id == MediaMetadata.mediaIdOf(b) : a.equals(b);
+    }
+
+    private void openSingle(Uri uri) {
+        SlideSource single = SlideSource.ofUris(Collections.singletonList(uri));
+        single.open(() -> attachSource(single, 0));
+    }
+
+    private void attachSource(SlideSource slideSource, int position) {
+        if (isDestroyed()) {
+            slideSource.release();
+            return;
+        }
+        source = slideSource;
+        pageAdapter = new PageAdapter();
+        viewPager.setAdapter(pageAdapter);
+        viewPager.setCurrentItem(position, false);
+        // setCurrentItem(0) on a fresh adapter doesn't report a selection
+        if (position == 0) {
+            showPage(0);
+        }
+    }
+
+    private void showPage(int position) {
+        if (source == null) return;
+        source.get(position, uri -> {
+            if (uri == null || isDestroyed() || viewPager.getCurrentItem() != position) return;
+            currentUri = uri;
+            openOriginalFor(position);
+            loadPhotoTags(uri);
+            for (int d = 1; d <= PREFETCH_DISTANCE; d++) {
+                prefetchTags(position - d);
+                prefetchTags(position + d);
+            }
+        });
+    }
+
+    // Only the page on screen keeps a region decoder open; neighbours stay at base resolution
+    private void openOriginalFor(int position) {
+        RecyclerView pages = (RecyclerView) viewPager.getChildAt(0);
+        for (int i = 0; i < pages.getChildCount(); i++) {
+            PageHolder holder = (PageHolder) pages.getChildViewHolder(pages.getChildAt(i));
+            if (holder.getBindingAdapterPosition() == position) {
+                holder.imageView.setImageSource(holder.uri);
+            } else {
+                holder.imageView.resetZoom();
+                holder.imageView.setImageSource(null);
+            }
+        }
+    }
+
+    private void prefetchTags(int position) {
+        if (position < 0 || position >= source.size()) return;
+        source.get(position, uri -> {
+            if (uri == null || tagCache.get(uri.toString()) != null) return;
+            String key = uri.toString();
+            TaskScheduler.execute(TaskScheduler.Lane.VISIBLE, this, () -> {
+                // Read-only: photos get their Photo row when they are actually shown
+                Photo photo = photoDao.getPhotoByUri(key);
+                List<String> tags = photo != null ? photoTagDao.getTagsForPhoto(photo.id) : new ArrayList<>();
+                runOnUiThread(() -> {
+                    if (photo != null) photoCache.put(key, photo);
+                    tagCache.put(key, tags);
+                });
+            });
+        });
     }
 
-    private void loadPhotoTags() {
-        executorService.execute(() -> {
-            // Try to find existing photo in database
-            Photo photo = photoDao.getPhotoByUri(currentUri.toString());
+    private void loadPhotoTags(Uri uri) {
+        String key = uri.toString();
+        stopObservingTags();
+        currentPhoto = null;
+
+        // Prefetched neighbours render without waiting for the database
+        List<String> cachedTags = tagCache.get(key);
+        displayTags(cachedTags != null ? cachedTags : new ArrayList<>());
+        Photo cachedPhoto = photoCache.get(key);
+        if (cachedPhoto != null) {
+            observeTags(cachedPhoto);
+            return;
+        }
+
+        TaskScheduler.execute(TaskScheduler.Lane.UI, this, () -> {
+            Photo loadedPhoto = photoDao.getOrCreatePhoto(key);
             runOnUiThread(() -> {
-                if (photo != null) {
-                    currentPhoto = photo;
-                    displayTags(photo.tag);
-                } else {
-                    // Create new photo entry if it doesn't exist
-                    currentPhoto = new Photo(currentUri.toString(), 0, ""); // albumId 0 for "All Photos"
-                    executorService.execute(() -> {
-                        photoDao.insert(currentPhoto);
-                    });
-                    displayTags("");
-                }
+                if (isDestroyed() || !uri.equals(currentUri)) return;
+                photoCache.put(key, loadedPhoto);
+                observeTags(loadedPhoto);
             });
         });
     }
 
-    private void displayTags(String tags) {
+    private void observeTags(Photo photo) {
+        currentPhoto = photo;
+        String key = photo.uri;
+        // Re-renders after every add/remove, so the writers below don't re-query
+        observedTags = photoTagDao.observeTagsForPhoto(photo.id);
+        observedTags.observe(this, tags -> {
+            tagCache.put(key, tags);
+            displayTags(tags);
+        });
+    }
+
+    private void stopObservingTags() {
+        if (observedTags != null) {
+            observedTags.removeObservers(this);
+            observedTags = null;
+        }
+    }
+
+    private void displayTags(List<String> tags) {
         tagsContainer.removeAllViews();
 
-        if (tags != null && !tags.isEmpty()) {
-            String[] tagArray = tags.split(",");
-            for (String tag : tagArray) {
-                String trimmedTag = tag.trim();
-                if (!trimmedTag.isEmpty()) {
-                    addTagView(trimmedTag);
-                }
-            }
+        for (String tag : tags) {
+            addTagView(tag);
         }
 
         // Show message if no tags
@@ -111,20 +276,35 @@ public class FullScreenActivity extends AppCompatActivity {
             removeTag(tag);
             tagsContainer.removeView(tagView);
             // Refresh the display in case this was the last tag
-            if (tagsContainer.getChildCount() == 1) { // Only the "no tags" message remains
-                displayTags("");
+            if (tagsContainer.getChildCount() == 0) {
+                displayTags(new ArrayList<>());
             }
         });
 
         tagsContainer.addView(tagView);
     }
 
+    // Ranking runs in SimilarPhotosActivity against features computed ahead of time
+    private void openSimilarPhotos() {
+        long mediaId = MediaMetadata.mediaIdOf(currentUri);
+        if (mediaId < 0) {
+            Toast.makeText(this, "Only photos from the device gallery can be compared", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Intent intent = new Intent(this, SimilarPhotosActivity.class);
+        intent.putExtra(SimilarPhotosActivity.EXTRA_MEDIA_ID, mediaId);
+        startActivity(intent);
+    }
+
     private void showAddTagDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Add Tag");
 
-        final EditText input = new EditText(this);
+        // Suggests existing tags so the same tag isn't spelled two ways
+        final AutoCompleteTextView input = new AutoCompleteTextView(this);
         input.setHint("Enter tag name");
+        input.setThreshold(1);
+        input.setAdapter(new TagSuggestionAdapter(this));
         builder.setView(input);
 
         builder.setPositiveButton("Add", (dialog, which) -> {
@@ -141,56 +321,29 @@ public class FullScreenActivity extends AppCompatActivity {
     }
 
     private void addNewTag(String newTag) {
-        executorService.execute(() -> {
-            String currentTags = currentPhoto.tag;
-            String updatedTags;
-
-            if (currentTags == null || currentTags.isEmpty()) {
-                updatedTags = newTag;
-            } else {
-                // Check if tag already exists
-                String[] existingTags = currentTags.split(",");
-                for (String existingTag : existingTags) {
-                    if (existingTag.trim().equalsIgnoreCase(newTag)) {
-                        runOnUiThread(() -> {
-                            Toast.makeText(this, "Tag already exists", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-                }
-                updatedTags = currentTags + "," + newTag;
+        if (currentPhoto == null) return;
+        int photoId = currentPhoto.id;
+        // No owner: the edit must land even if the screen is closed right after
+        TaskScheduler.execute(TaskScheduler.Lane.UI, () -> {
+            // PhotoTag's (photo_id, tag_key) key rejects case-insensitive duplicates
+            if (!photoTagDao.addTag(photoId, newTag)) {
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "Tag already exists", Toast.LENGTH_SHORT).show();
+                });
+                return;
             }
 
-            currentPhoto.tag = updatedTags;
-            photoDao.update(currentPhoto); // Use the update method instead of custom query
-
             runOnUiThread(() -> {
-                displayTags(updatedTags);
                 Toast.makeText(this, "Tag added: " + newTag, Toast.LENGTH_SHORT).show();
             });
         });
     }
 
     private void removeTag(String tagToRemove) {
-        executorService.execute(() -> {
-            String currentTags = currentPhoto.tag;
-            if (currentTags != null && !currentTags.isEmpty()) {
-                String[] tags = currentTags.split(",");
-                StringBuilder updatedTags = new StringBuilder();
-
-                for (String tag : tags) {
-                    String trimmedTag = tag.trim();
-                    if (!trimmedTag.equals(tagToRemove) && !trimmedTag.isEmpty()) {
-                        if (updatedTags.length() > 0) {
-                            updatedTags.append(",");
-                        }
-                        updatedTags.append(trimmedTag);
-                    }
-                }
-
-                currentPhoto.tag = updatedTags.toString();
-                photoDao.update(currentPhoto);
-
+        if (currentPhoto == null) return;
+        int photoId = currentPhoto.id;
+        TaskScheduler.execute(TaskScheduler.Lane.UI, () -> {
+            if (photoTagDao.removeTag(photoId, tagToRemove)) {
                 runOnUiThread(() -> {
                     Toast.makeText(this, "Tag removed: " + tagToRemove, Toast.LENGTH_SHORT).show();
                 });
@@ -198,11 +351,53 @@ public class FullScreenActivity extends AppCompatActivity {
         });
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (executorService != null) {
-            executorService.shutdown();
+    private class PageAdapter extends RecyclerView.Adapter<PageHolder> {
+        @NonNull
+        @Override
+        public PageHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = getLayoutInflater().inflate(R.layout.item_full_screen_page, parent, false);
+            return new PageHolder((DeepZoomImageView) view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull PageHolder holder, int position) {
+            holder.uri = null;
+            holder.imageView.resetZoom();
+            holder.imageView.setImageSource(null);
+            Glide.with(FullScreenActivity.this).clear(holder.imageView);
+            source.get(position, uri -> {
+                // Recycled for another page while the uri was being read
+                if (uri == null || holder.getBindingAdapterPosition() != position) return;
+                holder.uri = uri;
+                // Screen-sized base layer from Glide; the view tiles the original when zoomed in
+                ImageRequests.fullScreen(FullScreenActivity.this, uri)
+                        .into(holder.imageView);
+                if (viewPager.getCurrentItem() == position) {
+                    holder.imageView.setImageSource(uri);
+                }
+            });
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull PageHolder holder) {
+            holder.uri = null;
+            holder.imageView.setImageSource(null);
+            Glide.with(FullScreenActivity.this).clear(holder.imageView);
+        }
+
+        @Override
+        public int getItemCount() {
+            return source != null ? source.size() : 0;
+        }
+    }
+
+    static class PageHolder extends RecyclerView.ViewHolder {
+        final DeepZoomImageView imageView;
+        Uri uri;
+
+        PageHolder(@NonNull DeepZoomImageView imageView) {
+            super(imageView);
+            this.imageView = imageView;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,65 @@
+package com.example.midterm;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+
+// Sizes Glide's cache tiers from the device class instead of the library defaults.
+// Low-RAM devices keep about one screen of decoded thumbnails; devices with a large
+// heap keep several screens, so flinging back over recent rows hits memory.
+@GlideModule
+public final class GalleryGlideModule extends AppGlideModule {
+    private static final String TAG = "GalleryGlideModule";
+    private static final String DISK_CACHE_DIR = "image_thumbnails";
+    private static final long DISK_CACHE_LOW_RAM = 64L * 1024 * 1024;
+    private static final long DISK_CACHE_DEFAULT = 256L * 1024 * 1024;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = ImageRequests.isLowRamDevice(context);
+        int memoryClassMb = activityManager.getMemoryClass();
+
+        float memoryCacheScreens;
+        float bitmapPoolScreens;
+        if (lowRam) {
+            memoryCacheScreens = 1f;
+            bitmapPoolScreens = 1f;
+        } else if (memoryClassMb >= 256) {
+            memoryCacheScreens = 4f;
+            bitmapPoolScreens = 4f;
+        } else {
+            memoryCacheScreens = 2f;
+            bitmapPoolScreens = 3f;
+        }
+
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(memoryCacheScreens)
+                .setBitmapPoolScreens(bitmapPoolScreens)
+                .build();
+        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        builder.setBitmapPool(new LruBitmapPool(calculator.getBitmapPoolSize()));
+
+        // Holds the downsampled, transformed thumbnails (originals are local files already)
+        builder.setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR,
+                lowRam ? DISK_CACHE_LOW_RAM : DISK_CACHE_DEFAULT));
+
+        Log.d(TAG, "Glide caches: memory=" + calculator.getMemoryCacheSize()
+                + " pool=" + calculator.getBitmapPoolSize() + " lowRam=" + lowRam);
+    }
+
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.midterm;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Process-wide, in-memory index of MediaStore images kept in DATE_ADDED DESC order.
+// It is built with one full scan, then kept current by a ContentObserver on
+// EXTERNAL_CONTENT_URI: each change only reads the rows MediaStore reports as new or
+// modified since the last sync (GENERATION_MODIFIED per volume on API 30+, a
+// DATE_MODIFIED/DATE_ADDED watermark before that). Deletions arrive as NOTIFY_DELETE
+// uris on API 30+ and are otherwise detected by a row count mismatch.
+// Returning to "All Photos" just re-reads the latest snapshot.
+//
+// The same reads feed the MediaMetadata mirror in Room with batched upserts, so the
+// metadata the UI needs (dates, size, dimensions, mime, bucket) never costs a per-item
+// ContentResolver query.
+public class GalleryIndex {
+    private static final String TAG = "GalleryIndex";
+    private static final long SYNC_DELAY_MS = 500;
+    private static final int UPSERT_BATCH_SIZE = 500;
+    private static final Uri IMAGES_URI = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
+
+    public interface Listener {
+        void onGalleryChanged(GallerySnapshot snapshot);
+    }
+
+    private static GalleryIndex instance;
+
+    private final Context appContext;
+    private final ContentResolver resolver;
+    private final MediaMetadataDao metadataDao;
+    // Indexing is nobody's foreground work; serial so the sync state below has one writer at a time
+    private final TaskScheduler.SerialQueue syncQueue = TaskScheduler.serial(TaskScheduler.Lane.BACKGROUND);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Written on syncQueue only
+    private final Map<String, Long> lastGenerations = new HashMap<>();
+    private long lastDateWatermark = 0;
+    private final Set<Long> pendingDeletes = new HashSet<>();
+    // Published snapshot; volatile so callers on any thread see a complete one
+    private volatile GallerySnapshot snapshot;
+    private boolean buildRequested = false;
+    private boolean syncScheduled = false;
+
+    private final Runnable syncRunnable = this::scheduleSync;
+
+    private GalleryIndex(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.resolver = appContext.getContentResolver();
+        this.metadataDao = AppDatabase.getDatabase(appContext).mediaMetadataDao();
+    }
+
+    public static synchronized GalleryIndex get(Context context) {
+        if (instance == null) {
+            instance = new GalleryIndex(context);
+        }
+        return instance;
+    }
+
+    // Null until the first full scan has finished
+    @Nullable
+    public GallerySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Starts the initial scan and the observer; safe to call repeatedly (main thread)
+    public void ensureBuilt() {
+        if (buildRequested) return;
+        buildRequested = true;
+        resolver.registerContentObserver(IMAGES_URI, true, observer);
+        syncQueue.execute(this::fullScan);
+    }
+
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange, @NonNull Collection<Uri> uris, int flags) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    && (flags & ContentResolver.NOTIFY_DELETE) != 0) {
+                List<Long> deletedIds = new ArrayList<>();
+                for (Uri uri : uris) {
+                    try {
+                        deletedIds.add(Long.parseLong(uri.getLastPathSegment()));
+                    } catch (Exception ignored) {
+                        // Not an item uri; the count check in the next sync catches it
+                    }
+                }
+                syncQueue.execute(() -> pendingDeletes.addAll(deletedIds));
+            }
+            onChange(selfChange);
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            // MediaStore fires bursts of notifications (one per file on a copy); coalesce them
+            mainHandler.removeCallbacks(syncRunnable);
+            mainHandler.postDelayed(syncRunnable, SYNC_DELAY_MS);
+        }
+    };
+
+    private void scheduleSync() {
+        if (syncScheduled) return;
+        syncScheduled = true;
+        syncQueue.execute(() -> {
+            mainHandler.post(() -> syncScheduled = false);
+            incrementalSync();
+        });
+    }
+
+    // Sync queue
+    private void fullScan() {
+        long scanStartedAt = System.currentTimeMillis();
+        long[] ids;
+        long[] dates;
+        int count = 0;
+        List<MediaMetadata> batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+        try (Cursor cursor = resolver.query(IMAGES_URI, SYNC_PROJECTION, null, null,
+                MediaStore.Images.Media.DATE_ADDED + " DESC, " + MediaStore.Images.Media._ID + " DESC")) {
+            if (cursor == null) return;
+            ids = new long[cursor.getCount()];
+            dates = new long[ids.length];
+            while (cursor.moveToNext() && count < ids.length) {
+                MediaMetadata row = readRow(cursor, scanStartedAt);
+                ids[count] = row.mediaId;
+                dates[count++] = row.dateAdded;
+                batch.add(row);
+                if (batch.size() == UPSERT_BATCH_SIZE) {
+                    metadataDao.upsertAll(batch);
+                    batch = new ArrayList<>(UPSERT_BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                metadataDao.upsertAll(batch);
+            }
+            metadataDao.deleteNotIndexedSince(scanStartedAt);
+        } catch (Exception e) {
+            Log.e(TAG, "Error scanning gallery", e);
+            return;
+        }
+
+        publish(new GallerySnapshot(ids, dates, 1));
+        Log.d(TAG, "Indexed " + ids.length + " images");
+    }
+
+    // Sync queue
+    private void incrementalSync() {
+        GallerySnapshot current = snapshot;
+        if (current == null) {
+            fullScan();
+            return;
+        }
+
+        long syncedAt = System.currentTimeMillis();
+        Map<Long, Long> changed = new HashMap<>();
+        List<MediaMetadata> changedRows = new ArrayList<>();
+        try (Cursor cursor = queryChangedRows()) {
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    MediaMetadata row = readRow(cursor, syncedAt);
+                    changed.put(row.mediaId, row.dateAdded);
+                    changedRows.add(row);
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading changed rows", e);
+        }
+
+        Set<Long> deleted = new HashSet<>(pendingDeletes);
+        pendingDeletes.clear();
+
+        GallerySnapshot next = applyChanges(current, changed, deleted);
+        // Deletes are not visible through generation/date queries; a count mismatch means
+        // some were missed, so reconcile ids (a single-column scan) only in that case
+        int mediaStoreCount = queryCount();
+        if (mediaStoreCount >= 0 && mediaStoreCount != next.size()) {
+            Set<Long> missing = findMissingIds(next);
+            deleted.addAll(missing);
+            next = applyChanges(next, new HashMap<>(), missing);
+        }
+
+        try {
+            for (int start = 0; start < changedRows.size(); start += UPSERT_BATCH_SIZE) {
+                metadataDao.upsertAll(changedRows.subList(start, Math.min(changedRows.size(), start + UPSERT_BATCH_SIZE)));
+            }
+            metadataDao.deleteAll(new ArrayList<>(deleted));
+        } catch (Exception e) {
+            Log.e(TAG, "Error updating metadata mirror", e);
+        }
+
+        if (next != current) {
+            publish(next);
+            Log.d(TAG, "Synced " + changed.size() + " changed rows; " + next.size() + " images");
+        }
+    }
+
+    // Merges upserts and deletes into a new sorted snapshot, or returns current if nothing changed
+    private GallerySnapshot applyChanges(GallerySnapshot current, Map<Long, Long> changed, Set<Long> deleted) {
+        if (changed.isEmpty() && deleted.isEmpty()) {
+            return current;
+        }
+
+        // Keep untouched rows in their existing order, then merge in the changed ones
+        int n = current.size();
+        long[] keptIds = new long[n];
+        long[] keptDates = new long[n];
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            long id = current.ids[i];
+            if (deleted.contains(id) || changed.containsKey(id)) {
+                continue;
+            }
+            keptIds[kept] = id;
+            keptDates[kept] = current.datesAdded[i];
+            kept++;
+        }
+
+        List<long[]> incoming = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : changed.entrySet()) {
+            if (!deleted.contains(entry.getKey())) {
+                incoming.add(new long[]{entry.getKey(), entry.getValue()});
+            }
+        }
+        incoming.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(b[0], a[0]));
+
+        long[] ids = new long[kept + incoming.size()];
+        long[] dates = new long[ids.length];
+        int i = 0, j = 0, k = 0;
+        while (i < kept || j < incoming.size()) {
+            boolean takeKept;
+            if (j >= incoming.size()) {
+                takeKept = true;
+            } else if (i >= kept) {
+                takeKept = false;
+            } else {
+                long[] in = incoming.get(j);
+                takeKept = keptDates[i] > in[1] || (keptDates[i] == in[1] && keptIds[i] > in[0]);
+            }
+            if (takeKept) {
+                ids[k] = keptIds[i];
+                dates[k++] = keptDates[i++];
+            } else {
+                ids[k] = incoming.get(j)[0];
+                dates[k++] = incoming.get(j++)[1];
+            }
+        }
+        if (Arrays.equals(ids, current.ids)) {
+            // Only metadata we don't track changed (e.g. a file edit); order is unaffected
+            return current;
+        }
+        return new GallerySnapshot(ids, dates, current.version + 1);
+    }
+
+    // Wide projection: sync bookkeeping plus every column mirrored into MediaMetadata
+    private static final String[] SYNC_PROJECTION = buildProjection();
+
+    private static String[] buildProjection() {
+        List<String> columns = new ArrayList<>(Arrays.asList(
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.DATE_ADDED,
+                MediaStore.Images.Media.DATE_MODIFIED,
+                MediaStore.Images.Media.DATE_TAKEN,
+                MediaStore.Images.Media.DISPLAY_NAME,
+                MediaStore.Images.Media.SIZE,
+                MediaStore.Images.Media.WIDTH,
+                MediaStore.Images.Media.HEIGHT,
+                MediaStore.Images.Media.MIME_TYPE,
+                MediaStore.Images.Media.BUCKET_ID,
+                MediaStore.Images.Media.BUCKET_DISPLAY_NAME));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            columns.add(MediaStore.Images.Media.VOLUME_NAME);
+            columns.add(MediaStore.Images.Media.GENERATION_MODIFIED);
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    // Reads one row in SYNC_PROJECTION order and advances the watermarks past it
+    private MediaMetadata readRow(Cursor cursor, long indexedAt) {
+        MediaMetadata row = new MediaMetadata();
+        row.mediaId = cursor.getLong(0);
+        row.dateAdded = cursor.getLong(1);
+        row.dateModified = cursor.getLong(2);
+        row.dateTaken = cursor.getLong(3);
+        row.displayName = cursor.getString(4);
+        row.size = cursor.getLong(5);
+        row.width = cursor.getInt(6);
+        row.height = cursor.getInt(7);
+        row.mimeType = cursor.getString(8);
+        row.bucketId = cursor.getLong(9);
+        row.bucketName = cursor.getString(10);
+        row.indexedAt = indexedAt;
+
+        lastDateWatermark = Math.max(lastDateWatermark, Math.max(row.dateAdded, row.dateModified));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            String volume = cursor.getString(11);
+            long generation = cursor.getLong(12);
+            Long last = lastGenerations.get(volume);
+            if (last == null || generation > last) {
+                lastGenerations.put(volume, generation);
+            }
+        }
+        return row;
+    }
+
+    @Nullable
+    private Cursor queryChangedRows() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            // Generations are per volume, so each volume gets its own bound
+            StringBuilder selection = new StringBuilder();
+            List<String> args = new ArrayList<>();
+            for (String volume : MediaStore.getExternalVolumeNames(appContext)) {
+                if (selection.length() > 0) selection.append(" OR ");
+                selection.append("(").append(MediaStore.Images.Media.VOLUME_NAME).append(" = ? AND ")
+                        .append(MediaStore.Images.Media.GENERATION_MODIFIED).append(" > ?)");
+                Long last = lastGenerations.get(volume);
+                args.add(volume);
+                args.add(String.valueOf(last != null ? last : 0));
+            }
+            Bundle queryArgs = new Bundle();
+            queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, selection.toString());
+            queryArgs.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, args.toArray(new String[0]));
+            return resolver.query(IMAGES_URI, SYNC_PROJECTION, queryArgs, null);
+        }
+
+        // Seconds resolution: re-read the boundary second, upserts are idempotent
+        String since = String.valueOf(lastDateWatermark);
+        return resolver.query(IMAGES_URI, SYNC_PROJECTION,
+                MediaStore.Images.Media.DATE_ADDED + " >= ? OR " + MediaStore.Images.Media.DATE_MODIFIED + " >= ?",
+                new String[]{since, since}, null);
+    }
+
+    private int queryCount() {
+        try (Cursor cursor = resolver.query(IMAGES_URI, new String[]{MediaStore.Images.Media._ID}, null, null, null)) {
+            return cursor != null ? cursor.getCount() : -1;
+        } catch (Exception e) {
+            Log.e(TAG, "Error counting images", e);
+            return -1;
+        }
+    }
+
+    private Set<Long> findMissingIds(GallerySnapshot current) {
+        Set<Long> missing = new HashSet<>();
+        long[] present;
+        try (Cursor cursor = resolver.query(IMAGES_URI, new String[]{MediaStore.Images.Media._ID}, null, null, null)) {
+            if (cursor == null) return missing;
+            present = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext() && i < present.length) {
+                present[i++] = cursor.getLong(0);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error reconciling deleted images", e);
+            return missing;
+        }
+        Arrays.sort(present);
+        for (long id : current.ids) {
+            if (Arrays.binarySearch(present, id) < 0) {
+                missing.add(id);
+            }
+        }
+        return missing;
+    }
+
+    private void publish(GallerySnapshot next) {
+        snapshot = next;
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onGalleryChanged(next);
+            }
+        });
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.midterm;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+
+// Read-only List<Uri> over the MediaStore images query (DATE_ADDED DESC) that is filled
+// page by page. The full row count is known up front, so the RecyclerView gets its final
+// size (and a stable scrollbar) immediately; positions whose page has not been read yet
+// return null and are drawn as placeholders until loadAround() brings them in.
+//
+// Only the _ID column is kept, in a primitive array. The cursor stays open and is read
+// through its window one page at a time on a serial VISIBLE-lane queue, so later pages cost a moveToPosition
+// rather than a fresh query with an OFFSET.
+public class GalleryPagedList extends AbstractList<Uri> {
+    private static final String TAG = "GalleryPagedList";
+    public static final int PAGE_SIZE = 120;
+
+    public interface OnPageLoadedListener {
+        void onPageLoaded(int start, int count);
+    }
+
+    private final Cursor cursor;
+    private final int idColumn;
+    private final long[] ids;
+    private final BitSet loadedPages = new BitSet();
+    private final BitSet requestedPages = new BitSet();
+    private final TaskScheduler.SerialQueue pageQueue = TaskScheduler.serial(TaskScheduler.Lane.VISIBLE);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private OnPageLoadedListener listener;
+    private boolean closed = false;
+
+    private GalleryPagedList(Cursor cursor) {
+        this.cursor = cursor;
+        this.idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+        this.ids = new long[cursor.getCount()];
+    }
+
+    // Runs the query and reads the first page. Must be called off the main thread.
+    // Cancelling the signal aborts a query that is still running (OperationCanceledException).
+    @Nullable
+    public static GalleryPagedList open(ContentResolver resolver, @Nullable CancellationSignal cancellationSignal) {
+        Cursor cursor = resolver.query(
+                MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                new String[]{MediaStore.Images.Media._ID},
+                null,
+                null,
+                MediaStore.Images.Media.DATE_ADDED + " DESC",
+                cancellationSignal
+        );
+        if (cursor == null) {
+            return null;
+        }
+        GalleryPagedList list = new GalleryPagedList(cursor);
+        list.requestedPages.set(0);
+        if (list.readPage(0)) {
+            list.markLoaded(0);
+        }
+        return list;
+    }
+
+    public void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    // Null means the row's page has not been read yet. Safe from any thread, since
+    // ImageAdapter's differ reads the list in the background.
+    @Override
+    @Nullable
+    public Uri get(int index) {
+        if (index < 0 || index >= ids.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + ids.length);
+        }
+        if (!isLoaded(index)) {
+            return null;
+        }
+        return ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, ids[index]);
+    }
+
+    public boolean isLoaded(int index) {
+        synchronized (loadedPages) {
+            return loadedPages.get(index / PAGE_SIZE);
+        }
+    }
+
+    // Called from onBindViewHolder: makes sure the page holding position, and the page
+    // the user is heading into, are loaded or on their way.
+    public void loadAround(int position) {
+        int page = position / PAGE_SIZE;
+        requestPage(page);
+        if (position % PAGE_SIZE >= PAGE_SIZE / 2) {
+            requestPage(page + 1);
+        } else {
+            requestPage(page - 1);
+        }
+    }
+
+    private void requestPage(int page) {
+        if (closed || page < 0 || page * PAGE_SIZE >= ids.length || requestedPages.get(page)) {
+            return;
+        }
+        requestedPages.set(page);
+        pageQueue.execute(this, () -> {
+            if (readPage(page)) {
+                int start = page * PAGE_SIZE;
+                int count = Math.min(PAGE_SIZE, ids.length - start);
+                // The Handler hand-off publishes the ids written above to the main thread
+                mainHandler.post(() -> {
+                    markLoaded(page);
+                    if (listener != null && !closed) {
+                        listener.onPageLoaded(start, count);
+                    }
+                });
+            }
+        });
+    }
+
+    // The lock also publishes the ids written by readPage to readers on other threads
+    private void markLoaded(int page) {
+        synchronized (loadedPages) {
+            loadedPages.set(page);
+        }
+    }
+
+    // Fills ids for one page; the caller marks it loaded on the main thread
+    private boolean readPage(int page) {
+        int start = page * PAGE_SIZE;
+        int end = Math.min(ids.length, start + PAGE_SIZE);
+        try {
+            synchronized (cursor) {
+                if (cursor.isClosed()) return false;
+                // ids of a page are written before the page is marked loaded, never after
+                for (int i = start; i < end && cursor.moveToPosition(i); i++) {
+                    ids[i] = cursor.getLong(idColumn);
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Error reading gallery page " + page, e);
+            return false;
+        }
+    }
+
+    // Releases the cursor; call when the list is replaced by another data set
+    public void close() {
+        closed = true;
+        listener = null;
+        // Pages nobody will see again are skipped; the close runs after any read in progress
+        TaskScheduler.cancelAll(this);
+        pageQueue.execute(() -> {
+            synchronized (cursor) {
+                cursor.close();
+            }
+        });
+    }
+}
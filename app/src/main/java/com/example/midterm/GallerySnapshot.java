@@ -0,0 +1,38 @@
+package com.example.midterm;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.util.AbstractList;
+
+// Immutable view of the gallery (newest first) published by GalleryIndex.
+// Backed by primitive arrays; Uris are created on demand in get().
+public class GallerySnapshot extends AbstractList<Uri> {
+    static final GallerySnapshot EMPTY = new GallerySnapshot(new long[0], new long[0], 0);
+
+    final long[] ids;
+    final long[] datesAdded;
+    // Bumped on every published change, so holders can tell snapshots apart cheaply
+    public final int version;
+
+    GallerySnapshot(long[] ids, long[] datesAdded, int version) {
+        this.ids = ids;
+        this.datesAdded = datesAdded;
+        this.version = version;
+    }
+
+    @Override
+    public Uri get(int index) {
+        return ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, ids[index]);
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+}
@@ -3,6 +3,8 @@ package com.example.midterm;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -11,23 +13,51 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 public class ImageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     private Context context;
-    private List<Uri> imageUris;
-    private Map<Uri, String> imageTags = new HashMap<>();
+    // Committed list, its selection and the display text of its rows. Replaced, never
+    // mutated, and only on the main thread.
+    private AdapterSnapshot snapshot = AdapterSnapshot.EMPTY;
+    private final AsyncListDiffer<Uri> differ;
+    private final Set<Integer> requestedTagBlocks = new HashSet<>();
+    // One generation per submitted list; tag/metadata blocks are tied to the list they were read for
+    private final RequestGeneration tagGeneration = new RequestGeneration();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private static final String TAG = "ImageAdapter";
+    static final int TAG_BLOCK_SIZE = 60;
+    // Only lists up to this size are diffed (a search being refined, an album being edited);
+    // beyond it a Myers diff with move detection costs more than swapping the data set
+    private static final int MAX_DIFF_SIZE = 2000;
+    // Partial bind: only the tag/metadata text of the row changed
+    private static final Object PAYLOAD_DETAILS = new Object();
+
+    private static final DiffUtil.ItemCallback<Uri> DIFF_CALLBACK = new DiffUtil.ItemCallback<Uri>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Uri oldItem, @NonNull Uri newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Uri oldItem, @NonNull Uri newItem) {
+            // Tags and metadata are not part of the list; they arrive as PAYLOAD_DETAILS updates
+            return true;
+        }
+    };
 
     // View types
     public static final int VIEW_TYPE_GRID = 0;
@@ -35,46 +65,142 @@ public class ImageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
     private int currentViewType = VIEW_TYPE_GRID; // Default to grid view
 
+    // Decode sizes in pixels; the grid cell is refined by setGridCellSize once the
+    // RecyclerView has been measured
+    private int gridCellWidth;
+    private int gridCellHeight;
+    private final int listThumbSize;
+
     public ImageAdapter(Context context, List<Uri> imageUris) {
         this.context = context;
-        this.imageUris = imageUris != null ? imageUris : new ArrayList<>();
+        List<Uri> initial = imageUris != null ? imageUris : new ArrayList<>();
+        this.snapshot = AdapterSnapshot.EMPTY.withList(initial, null);
+        // Match item_image_grid.xml (150dp tall) and item_image.xml (100dp square)
+        float density = context.getResources().getDisplayMetrics().density;
+        this.gridCellHeight = Math.round(150 * density);
+        this.gridCellWidth = gridCellHeight;
+        this.listThumbSize = Math.round(100 * density);
+        // Diffs run on the differ's background executor and are dispatched as granular
+        // insert/remove/move notifications on the main thread
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this),
+                new AsyncDifferConfig.Builder<>(DIFF_CALLBACK).build());
+        setHasStableIds(true);
+        differ.submitList(initial);
     }
 
     public void setViewType(int viewType) {
+        if (viewType == currentViewType) return;
         this.currentViewType = viewType;
-        notifyDataSetChanged();
+        // Every row needs a holder of the other type
+        notifyItemRangeChanged(0, getItemCount());
     }
 
     public int getViewType() {
         return currentViewType;
     }
 
-    public void loadTagsForImages() {
-        new Thread(() -> {
+    public void setGridCellSize(int width, int height) {
+        if (width <= 0 || height <= 0 || (width == gridCellWidth && height == gridCellHeight)) return;
+        this.gridCellWidth = width;
+        this.gridCellHeight = height;
+        if (currentViewType == VIEW_TYPE_GRID) {
+            notifyItemRangeChanged(0, getItemCount());
+        }
+    }
+
+    public int getGridCellWidth() {
+        return gridCellWidth;
+    }
+
+    public int getGridCellHeight() {
+        return gridCellHeight;
+    }
+
+    public int getListThumbSize() {
+        return listThumbSize;
+    }
+
+    // Tags and MediaStore metadata are fetched in fixed blocks of positions as they come
+    // close to the viewport: one chunked IN (...) query per table per block, never one
+    // query (or ContentResolver call) per image
+    private void ensureTagsLoaded(int position) {
+        int block = position / TAG_BLOCK_SIZE;
+        requestTagBlock(block);
+        // Prefetch the next block so tags are ready before it scrolls into view
+        if ((position % TAG_BLOCK_SIZE) >= TAG_BLOCK_SIZE / 2) {
+            requestTagBlock(block + 1);
+        } else if (block > 0) {
+            requestTagBlock(block - 1);
+        }
+    }
+
+    private void requestTagBlock(int block) {
+        List<Uri> uris = snapshot.uris;
+        int start = block * TAG_BLOCK_SIZE;
+        if (start >= uris.size() || !requestedTagBlocks.add(block)) {
+            return;
+        }
+        int end = Math.min(uris.size(), start + TAG_BLOCK_SIZE);
+        List<Uri> blockUris = new ArrayList<>(uris.subList(start, end));
+        if (blockUris.contains(null)) {
+            // Part of a gallery page that is still loading; retried when those rows rebind
+            requestedTagBlocks.remove(block);
+            return;
+        }
+        RequestGeneration.Token token = tagGeneration.current();
+
+        TaskScheduler.execute(TaskScheduler.Lane.VISIBLE, token, () -> {
             try {
-                AppDatabase db = AppDatabase.getDatabase(context);
-                PhotoDao photoDao = db.photoDao();
-                Map<Uri, String> newImageTags = new HashMap<>();
-
-                for (Uri uri : imageUris) {
-                    try {
-                        Photo photo = photoDao.getPhotoByUri(uri.toString());
-                        if (photo != null && photo.tag != null && !photo.tag.isEmpty()) {
-                            newImageTags.put(uri, photo.tag);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "Error loading tags for URI: " + uri, e);
+                List<String> uriStrings = new ArrayList<>(blockUris.size());
+                for (Uri uri : blockUris) {
+                    uriStrings.add(uri.toString());
+                }
+                List<Long> mediaIds = new ArrayList<>(blockUris.size());
+                for (Uri uri : blockUris) {
+                    long mediaId = MediaMetadata.mediaIdOf(uri);
+                    if (mediaId != -1) {
+                        mediaIds.add(mediaId);
                     }
                 }
+                if (token.isCancelled()) return;
+                AppDatabase db = AppDatabase.getDatabase(context);
+                Map<String, String> tagsByUri = db.photoDao().getTagsByUri(uriStrings);
+                Map<Long, MediaMetadata> metadataById = db.mediaMetadataDao().getByIdMap(mediaIds);
+
+                // Row text is formatted here, off the main thread; binds only copy it into views
+                Map<Uri, ImageDetails> details = new HashMap<>();
+                for (Uri uri : blockUris) {
+                    details.put(uri, ImageDetails.build(uri, tagsByUri.get(uri.toString()),
+                            metadataById.get(MediaMetadata.mediaIdOf(uri))));
+                }
 
-                imageTags.clear();
-                imageTags.putAll(newImageTags);
-                notifyDataSetChanged();
-
+                mainHandler.post(() -> {
+                    // Drop results for a list that has since been replaced
+                    if (!token.isCurrent()) return;
+                    AdapterSnapshot previous = snapshot;
+                    snapshot = previous.withBlock(block, details);
+                    // Only rows whose text actually changed are rebound, and only partially
+                    for (int i = 0; i < blockUris.size(); i++) {
+                        Uri uri = blockUris.get(i);
+                        if (!details.get(uri).sameText(detailsAt(previous, start + i, uri))) {
+                            notifyItemChanged(start + i, PAYLOAD_DETAILS);
+                        }
+                    }
+                });
             } catch (Exception e) {
-                Log.e(TAG, "Error loading tags", e);
+                Log.e(TAG, "Error loading details for positions " + start + "-" + end, e);
             }
-        }).start();
+        });
+    }
+
+    // Re-reads tags and metadata for every block already shown, e.g. after returning from
+    // FullScreenActivity; rows whose tags changed get a partial rebind, the rest are untouched
+    public void refreshDetails() {
+        Set<Integer> blocks = new HashSet<>(requestedTagBlocks);
+        requestedTagBlocks.clear();
+        for (int block : blocks) {
+            requestTagBlock(block);
+        }
     }
 
     @Override
@@ -82,6 +208,18 @@ public class ImageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         return currentViewType;
     }
 
+    // MediaStore id where there is one, so holders follow their photo across list changes
+    @Override
+    public long getItemId(int position) {
+        Uri uri = differ.getCurrentList().get(position);
+        if (uri == null) {
+            // Placeholder rows: unique negative ids that cannot collide with MediaStore ids
+            return -2L - position;
+        }
+        long mediaId = MediaMetadata.mediaIdOf(uri);
+        return mediaId != -1 ? mediaId : (Integer.MIN_VALUE - 1L) - (uri.toString().hashCode() & 0x7fffffffL);
+    }
+
     @NonNull
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -96,15 +234,36 @@ public class ImageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position,
+                                 @NonNull List<Object> payloads) {
+        Uri imageUri = differ.getCurrentList().get(position);
+        if (payloads.isEmpty() || imageUri == null) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        // Text-only update: leave the image request alone
+        bindDetails(holder, detailsAt(snapshot, position, imageUri));
+    }
+
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
         try {
-            Uri imageUri = imageUris.get(position);
+            if (snapshot.uris instanceof GalleryPagedList) {
+                ((GalleryPagedList) snapshot.uris).loadAround(position);
+            }
+            Uri imageUri = differ.getCurrentList().get(position);
+            if (imageUri == null) {
+                bindPlaceholder(holder);
+                return;
+            }
+            ensureTagsLoaded(position);
 
+            ImageDetails details = detailsAt(snapshot, position, imageUri);
             if (holder instanceof GridViewHolder) {
-                bindGridViewHolder((GridViewHolder) holder, imageUri);
+                bindGridViewHolder((GridViewHolder) holder, imageUri, details);
             } else if (holder instanceof ListViewHolder) {
-                bindListViewHolder((ListViewHolder) holder, imageUri);
+                bindListViewHolder((ListViewHolder) holder, imageUri, details);
             }
 
         } catch (Exception e) {
@@ -112,101 +271,159 @@ public class ImageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
         }
     }
 
-    private void bindGridViewHolder(GridViewHolder holder, Uri imageUri) {
-        // Load image
-        Glide.with(context)
-                .load(imageUri)
-                .into(holder.imageView);
+    // Row whose gallery page has not been read yet: keeps its size so scroll positions are stable
+    private void bindPlaceholder(RecyclerView.ViewHolder holder) {
+        ImageView imageView = holder instanceof GridViewHolder
+                ? ((GridViewHolder) holder).imageView
+                : ((ListViewHolder) holder).imageView;
+        Glide.with(context).clear(imageView);
+        imageView.setImageResource(R.drawable.ic_placeholder);
 
-        // Set tag text
-        String tags = imageTags.get(imageUri);
-        if (tags != null && !tags.isEmpty()) {
-            String displayTags = formatTagsForDisplay(tags);
-            holder.textViewTag.setText(displayTags);
-            holder.textViewTag.setVisibility(View.VISIBLE);
+        if (holder instanceof GridViewHolder) {
+            ((GridViewHolder) holder).textViewTag.setVisibility(View.GONE);
         } else {
-            holder.textViewTag.setVisibility(View.GONE);
+            ListViewHolder listHolder = (ListViewHolder) holder;
+            listHolder.textViewFileName.setText("");
+            listHolder.textViewTag.setText("");
+            listHolder.textViewDate.setText("");
         }
+        holder.itemView.setOnClickListener(null);
+    }
 
-        holder.itemView.setOnClickListener(v -> {
-            openFullScreenActivity(imageUri);
-        });
+    private static ImageDetails detailsAt(AdapterSnapshot state, int position, Uri uri) {
+        ImageDetails details = state.details(position, uri);
+        return details != null ? details : ImageDetails.placeholder(uri);
     }
 
-    private void bindListViewHolder(ListViewHolder holder, Uri imageUri) {
-        // Load image
-        Glide.with(context)
-                .load(imageUri)
+    private void bindGridViewHolder(GridViewHolder holder, Uri imageUri, ImageDetails details) {
+        // Load a thumbnail decoded at the cell size rather than the original
+        ImageRequests.thumbnail(context, imageUri, gridCellWidth, gridCellHeight)
+                .listener(PreloadStats.BIND_LISTENER)
                 .into(holder.imageView);
 
-        // Set file name
-        String fileName = getFileNameFromUri(imageUri);
-        holder.textViewFileName.setText(fileName);
-
-        // Set tags
-        String tags = imageTags.get(imageUri);
-        if (tags != null && !tags.isEmpty()) {
-            holder.textViewTag.setText("Tags: " + tags);
-            holder.textViewTag.setVisibility(View.VISIBLE);
-        } else {
-            holder.textViewTag.setText("No tags");
-            holder.textViewTag.setVisibility(View.VISIBLE);
-        }
-
-        // Set date (using current time as placeholder)
-        String dateString = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault()).format(new Date());
-        holder.textViewDate.setText(dateString);
+        bindGridDetails(holder, details);
 
         holder.itemView.setOnClickListener(v -> {
-            openFullScreenActivity(imageUri);
+            openFullScreenActivity(imageUri, holder.getBindingAdapterPosition());
         });
     }
 
-    private String getFileNameFromUri(Uri uri) {
-        try {
-            String path = uri.getLastPathSegment();
-            if (path != null && path.contains("/")) {
-                return path.substring(path.lastIndexOf("/") + 1);
-            }
-            return path != null ? path : "Image";
-        } catch (Exception e) {
-            return "Image";
+    private void bindDetails(RecyclerView.ViewHolder holder, ImageDetails details) {
+        if (holder instanceof GridViewHolder) {
+            bindGridDetails((GridViewHolder) holder, details);
+        } else if (holder instanceof ListViewHolder) {
+            bindListDetails((ListViewHolder) holder, details);
         }
     }
 
-    private String formatTagsForDisplay(String tags) {
-        if (tags == null || tags.isEmpty()) return "";
+    private void bindGridDetails(GridViewHolder holder, ImageDetails details) {
+        // Set tag text
+        if (details.gridTagText != null) {
+            holder.textViewTag.setText(details.gridTagText);
+            holder.textViewTag.setVisibility(View.VISIBLE);
+        } else {
+            holder.textViewTag.setVisibility(View.GONE);
+        }
+    }
 
-        try {
-            String[] tagArray = tags.split(",");
-            if (tagArray.length == 0) return "";
+    private void bindListViewHolder(ListViewHolder holder, Uri imageUri, ImageDetails details) {
+        // Load image
+        ImageRequests.thumbnail(context, imageUri, listThumbSize, listThumbSize)
+                .listener(PreloadStats.BIND_LISTENER)
+                .into(holder.imageView);
 
-            String firstTag = tagArray[0].trim();
-            if (tagArray.length > 1) {
-                return firstTag + " (+" + (tagArray.length - 1) + ")";
-            }
-            return firstTag;
-        } catch (Exception e) {
-            return tags;
-        }
+        bindListDetails(holder, details);
+
+        holder.itemView.setOnClickListener(v -> {
+            openFullScreenActivity(imageUri, holder.getBindingAdapterPosition());
+        });
+    }
+
+    private void bindListDetails(ListViewHolder holder, ImageDetails details) {
+        // File name and date come from the metadata mirror once the row's block has loaded
+        holder.textViewFileName.setText(details.fileName);
+        holder.textViewTag.setText(details.listTagText);
+        holder.textViewTag.setVisibility(View.VISIBLE);
+        holder.textViewDate.setText(details.dateText);
     }
 
-    private void openFullScreenActivity(Uri imageUri) {
+    // Opens the pager over the whole list at the tapped photo
+    private void openFullScreenActivity(Uri imageUri, int position) {
         Intent intent = new Intent(context, FullScreenActivity.class);
         intent.putExtra("imageUri", imageUri.toString());
+        intent.putExtra(FullScreenActivity.EXTRA_POSITION, position);
+        Selection pagerSelection = snapshot.selection;
+        if (pagerSelection == null) {
+            long[] ids = Selection.idsOf(snapshot.uris);
+            if (ids != null) pagerSelection = Selection.ofIds(ids);
+        }
+        if (pagerSelection != null) {
+            SelectionRegistry.putInto(intent, pagerSelection);
+        }
         context.startActivity(intent);
     }
 
+    // Null for placeholder rows and out-of-range positions
+    public Uri getUriAt(int position) {
+        List<Uri> current = differ.getCurrentList();
+        return position >= 0 && position < current.size() ? current.get(position) : null;
+    }
+
     @Override
     public int getItemCount() {
-        return imageUris != null ? imageUris.size() : 0;
+        return differ.getCurrentList().size();
     }
 
+    public boolean isShowing(List<Uri> uris) {
+        return snapshot.uris == uris;
+    }
+
+    // Row text carries over to the new list by uri (see AdapterSnapshot); only the block
+    // bookkeeping is position based and has to be reset
     public void updateData(List<Uri> newUris) {
-        this.imageUris = newUris != null ? newUris : new ArrayList<>();
-        this.imageTags.clear();
-        loadTagsForImages();
-        notifyDataSetChanged();
+        updateData(newUris, null);
+    }
+
+    public void updateData(List<Uri> newUris, Selection newSelection) {
+        List<Uri> next = newUris != null ? newUris : new ArrayList<>();
+        requestedTagBlocks.clear();
+        // Blocks queued or running for the outgoing list are cancelled, and late results dropped
+        tagGeneration.next();
+
+        if (!shouldDiff(differ.getCurrentList(), snapshot.selection, next, newSelection)) {
+            // Submitting null first makes the differ swap lists immediately without diffing
+            List<Uri> empty = new ArrayList<>();
+            differ.submitList(null, () -> onListCommitted(empty, null));
+        }
+        differ.submitList(next, () -> onListCommitted(next, newSelection));
+    }
+
+    // Diffing pays off only between two small versions of the same list. Gallery lists are
+    // swapped: they run to tens of thousands of rows, GalleryPagedList holds placeholders
+    // and fills pages while the differ would be reading it, and GallerySnapshot replaces it
+    // with the same rows. A different kind of list, album or sort order is unrelated.
+    private static boolean shouldDiff(List<Uri> current, Selection currentSelection,
+                                      List<Uri> next, Selection nextSelection) {
+        if (isGalleryList(current) || isGalleryList(next)) return false;
+        if (current.getClass() != next.getClass()) return false;
+        if (current.size() > MAX_DIFF_SIZE || next.size() > MAX_DIFF_SIZE) return false;
+        if (currentSelection == null || nextSelection == null) return false;
+        return currentSelection.kind == nextSelection.kind
+                && currentSelection.albumId == nextSelection.albumId
+                && currentSelection.sort == nextSelection.sort
+                && !next.contains(null);
+    }
+
+    private static boolean isGalleryList(List<Uri> uris) {
+        return uris instanceof GalleryPagedList || uris instanceof GallerySnapshot;
+    }
+
+    // Runs before the new list's rows are bound; blocks requested by binds of the outgoing
+    // list while the diff ran belong to the old positions and are dropped
+    private void onListCommitted(List<Uri> list, Selection listSelection) {
+        snapshot = snapshot.withList(list, listSelection);
+        requestedTagBlocks.clear();
+        tagGeneration.next();
     }
 
     // Grid View Holder (uses item_image_grid.xml)
@@ -0,0 +1,86 @@
+package com.example.midterm;
+
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+
+// Display text for one grid/list row, formatted once off the main thread. Immutable:
+// binds only read final fields, and an update replaces the whole object.
+final class ImageDetails {
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault()));
+
+    // Comma-joined tags as stored, or null
+    @Nullable final String tags;
+    // Grid caption, e.g. "Beach (+2)"; null hides it
+    @Nullable final String gridTagText;
+    final String listTagText;
+    final String fileName;
+    // Blank until the metadata mirror has the row
+    final String dateText;
+
+    private ImageDetails(@Nullable String tags, @Nullable String gridTagText, String listTagText,
+                         String fileName, String dateText) {
+        this.tags = tags;
+        this.gridTagText = gridTagText;
+        this.listTagText = listTagText;
+        this.fileName = fileName;
+        this.dateText = dateText;
+    }
+
+    static ImageDetails build(Uri uri, @Nullable String tags, @Nullable MediaMetadata metadata) {
+        boolean hasTags = tags != null && !tags.isEmpty();
+        String fileName = metadata != null && metadata.displayName != null
+                ? metadata.displayName
+                : fileNameFromUri(uri);
+        String dateText = metadata != null
+                ? DATE_FORMAT.get().format(new Date(metadata.getDisplayDateMillis()))
+                : "";
+        return new ImageDetails(hasTags ? tags : null,
+                hasTags ? formatTagsForGrid(tags) : null,
+                hasTags ? "Tags: " + tags : "No tags",
+                fileName,
+                dateText);
+    }
+
+    // What a row shows before its block has loaded
+    static ImageDetails placeholder(Uri uri) {
+        return new ImageDetails(null, null, "No tags", fileNameFromUri(uri), "");
+    }
+
+    boolean sameText(@Nullable ImageDetails other) {
+        return other != null
+                && Objects.equals(gridTagText, other.gridTagText)
+                && listTagText.equals(other.listTagText)
+                && fileName.equals(other.fileName)
+                && dateText.equals(other.dateText);
+    }
+
+    private static String fileNameFromUri(Uri uri) {
+        try {
+            String path = uri.getLastPathSegment();
+            if (path != null && path.contains("/")) {
+                return path.substring(path.lastIndexOf("/") + 1);
+            }
+            return path != null ? path : "Image";
+        } catch (Exception e) {
+            return "Image";
+        }
+    }
+
+    private static String formatTagsForGrid(String tags) {
+        String[] tagArray = tags.split(",");
+        if (tagArray.length == 0) return "";
+
+        String firstTag = tagArray[0].trim();
+        if (tagArray.length > 1) {
+            return firstTag + " (+" + (tagArray.length - 1) + ")";
+        }
+        return firstTag;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+
+import java.util.Collections;
+import java.util.List;
+
+// Feeds Glide's RecyclerViewPreloader with the exact requests ImageAdapter will bind, at the
+// cell size of the current grid/list mode, so a preloaded row is a memory-cache hit on bind.
+// The preloader itself tracks scroll direction and cancels its targets when it reverses.
+public class ImagePreloadProvider implements ListPreloader.PreloadModelProvider<Uri>,
+        ListPreloader.PreloadSizeProvider<Uri> {
+    private final Context context;
+    private final ImageAdapter adapter;
+
+    public ImagePreloadProvider(Context context, ImageAdapter adapter) {
+        this.context = context;
+        this.adapter = adapter;
+    }
+
+    @NonNull
+    @Override
+    public List<Uri> getPreloadItems(int position) {
+        Uri uri = adapter.getUriAt(position);
+        // Placeholder rows of a gallery page that is still loading have nothing to preload
+        return uri != null ? Collections.singletonList(uri) : Collections.emptyList();
+    }
+
+    @Nullable
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(@NonNull Uri uri) {
+        int[] size = currentSize();
+        return ImageRequests.thumbnail(context, uri, size[0], size[1]);
+    }
+
+    @Nullable
+    @Override
+    public int[] getPreloadSize(@NonNull Uri item, int adapterPosition, int perItemPosition) {
+        return currentSize();
+    }
+
+    private int[] currentSize() {
+        if (adapter.getViewType() == ImageAdapter.VIEW_TYPE_LIST) {
+            return new int[]{adapter.getListThumbSize(), adapter.getListThumbSize()};
+        }
+        return new int[]{adapter.getGridCellWidth(), adapter.getGridCellHeight()};
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.midterm;
+
+import android.app.ActivityManager;
+import android.content.ContentUris;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.Downsampler;
+import com.bumptech.glide.request.RequestOptions;
+
+// Glide requests shared by the grid, list, slideshow and full-screen surfaces.
+// Models are canonicalized to EXTERNAL_CONTENT_URI/<MediaStore id>, so the same photo
+// reached through the gallery, an album or a search shares one cache key.
+//
+// Decode formats are set per surface here and nowhere else. Screen-sized images use
+// ARGB_8888 hardware bitmaps, whose pixels live in graphics memory instead of the Java
+// heap. On low-RAM devices, thumbnails and the small previews are decoded as RGB_565,
+// which halves their size; Glide still falls back to ARGB_8888 for images with alpha.
+// The zoom tiles in DeepZoomImageView stay full-quality ARGB_8888.
+public final class ImageRequests {
+    // Small, fast first pass shown while the screen-sized decode runs
+    public static final int PREVIEW_SIZE_PX = 256;
+
+    private static Boolean lowRamDevice;
+
+    private ImageRequests() {}
+
+    public static boolean isLowRamDevice(Context context) {
+        if (lowRamDevice == null) {
+            ActivityManager activityManager = (ActivityManager) context.getApplicationContext()
+                    .getSystemService(Context.ACTIVITY_SERVICE);
+            lowRamDevice = activityManager.isLowRamDevice();
+        }
+        return lowRamDevice;
+    }
+
+    // Grid and list thumbnails: many on screen at once, and photos are opaque
+    private static RequestOptions thumbnailFormat(Context context) {
+        return isLowRamDevice(context)
+                ? new RequestOptions().format(DecodeFormat.PREFER_RGB_565)
+                : screenFormat();
+    }
+
+    // Slideshow and full-screen base layer: full quality, off the Java heap where the
+    // device supports it
+    private static RequestOptions screenFormat() {
+        return new RequestOptions()
+                .format(DecodeFormat.PREFER_ARGB_8888)
+                .set(Downsampler.ALLOW_HARDWARE_CONFIG, true);
+    }
+
+    public static Object cacheModel(Uri uri) {
+        long mediaId = MediaMetadata.mediaIdOf(uri);
+        if (mediaId == -1) {
+            return uri;
+        }
+        return ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, mediaId);
+    }
+
+    // Cell-sized, center-cropped decode; the transformed result is what the disk cache keeps
+    public static RequestBuilder<Drawable> thumbnail(Context context, Uri uri, int width, int height) {
+        return Glide.with(context)
+                .load(cacheModel(uri))
+                .apply(thumbnailFormat(context)
+                        .override(width, height)
+                        .centerCrop()
+                        .diskCacheStrategy(DiskCacheStrategy.RESOURCE));
+    }
+
+    // Screen-sized decode preceded by a small preview
+    public static RequestBuilder<Drawable> fullScreen(Context context, Uri uri) {
+        return Glide.with(context)
+                .load(cacheModel(uri))
+                .thumbnail(Glide.with(context)
+                        .load(cacheModel(uri))
+                        .apply(thumbnailFormat(context).override(PREVIEW_SIZE_PX)))
+                .apply(screenFormat().fitCenter());
+    }
+
+    // Slides fill the screen with centerCrop; they are sized to the view, never to the original
+    public static RequestBuilder<Drawable> slide(Context context, Uri uri) {
+        return Glide.with(context)
+                .load(cacheModel(uri))
+                .thumbnail(Glide.with(context)
+                        .load(cacheModel(uri))
+                        .apply(thumbnailFormat(context).override(PREVIEW_SIZE_PX)))
+                .apply(screenFormat().centerCrop());
+    }
+}
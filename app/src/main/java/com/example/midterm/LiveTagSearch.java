@@ -0,0 +1,79 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// The searches behind MainActivity's live search header, one per debounced keystroke.
+//
+// Boolean queries (TagQuery) are bitmap algebra over TagBitmapIndex and always evaluated
+// in full. Keyword queries are ANDed FTS prefix terms, so a query that extends the previous
+// one ("bea" -> "beac", "beach" -> "beach fam") can only match a subset of its results;
+// those are filtered in memory instead of querying the database again. Refined results keep
+// the previous ranking. reset() forgets the previous results, e.g. after tags were edited.
+final class LiveTagSearch {
+    private static final String TAG = "LiveTagSearch";
+
+    private final TagSearchEngine engine;
+    private final TagBitmapIndex bitmapIndex;
+    // Last complete keyword result set; guarded by this. Any stored pair is self-consistent,
+    // so a superseded search finishing late can only leave a broader base behind.
+    private String lastQuery;
+    private List<Photo> lastResults;
+
+    LiveTagSearch(Context context) {
+        this.engine = new TagSearchEngine(AppDatabase.getDatabase(context).photoDao());
+        this.bitmapIndex = TagBitmapIndex.get(context);
+    }
+
+    // Worker thread. Throws IllegalArgumentException for a boolean query that doesn't parse
+    // yet, which while typing usually just means it isn't finished.
+    List<Uri> search(String query) {
+        List<Uri> uris = new ArrayList<>();
+        if (TagQuery.isBoolean(query)) {
+            for (long id : bitmapIndex.search(query)) {
+                uris.add(Selection.uriOf(id));
+            }
+            return uris;
+        }
+
+        String previous;
+        List<Photo> base;
+        synchronized (this) {
+            previous = lastQuery;
+            base = lastResults;
+        }
+        String folded = query.toLowerCase(Locale.ROOT);
+        List<Photo> photos;
+        if (previous != null && folded.startsWith(previous)) {
+            photos = TagSearchEngine.refine(base, query);
+            Log.d(TAG, "Refined \"" + previous + "\" -> \"" + folded + "\": "
+                    + base.size() + " -> " + photos.size());
+        } else {
+            photos = engine.search(query);
+        }
+        synchronized (this) {
+            lastQuery = folded;
+            lastResults = photos;
+        }
+
+        for (Photo photo : photos) {
+            if (TaskScheduler.isCancelled()) break;
+            try {
+                uris.add(Uri.parse(photo.uri));
+            } catch (Exception e) {
+                Log.e(TAG, "Invalid URI: " + photo.uri, e);
+            }
+        }
+        return uris;
+    }
+
+    synchronized void reset() {
+        lastQuery = null;
+        lastResults = null;
+    }
+}
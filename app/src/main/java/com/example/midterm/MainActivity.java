@@ -2,23 +2,26 @@ package com.example.midterm;
 
 import android.Manifest;
 import android.app.Activity;
-import android.content.ContentUris;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
+import android.text.Editable;
 import android.text.InputType;
+import android.text.TextWatcher;
 import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.view.inputmethod.InputMethodManager;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.LinearLayout;
-import android.widget.RelativeLayout;
+import android.widget.MultiAutoCompleteTextView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -35,26 +38,35 @@ import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import android.util.Log;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_CODE_READ_IMAGES = 100;
     private static final int REQUEST_CODE_PICK_IMAGE = 101;
-    private ExecutorService databaseExecutor = Executors.newSingleThreadExecutor();
     private static final String TAG = "MainActivity";
     private boolean isSearching = false;
+    // Bumped by every gallery, album or search load; only the latest one may update the grid
+    private final RequestGeneration contentGeneration = new RequestGeneration();
+    // Last search results, handed to the slideshow while searching
+    private Selection searchSelection;
     private String currentSearchQuery = "";
     private LinearLayout searchHeader;
+    private MultiAutoCompleteTextView searchInput;
+    private LiveTagSearch liveSearch;
+    // Waits this long after the last keystroke before searching
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable pendingSearch = () -> performTagSearch(currentSearchQuery);
     private TextView tvSearchResults;
     private Button btnCancelSearch;
     private ImageButton btnToggleView;
@@ -62,12 +74,18 @@ public class MainActivity extends AppCompatActivity {
     private GridLayoutManager gridLayoutManager;
     private LinearLayoutManager listLayoutManager;
     private MaterialButton btnSlideshow;
+    private MaterialButton btnDuplicates;
     private ImageButton btnDeleteAlbum;
+    private ImageButton btnAlbumList;
+    private RecyclerViewPreloader<Uri> preloader;
+    private static final int PRELOAD_ROWS_GRID = 6;
+    private static final int PRELOAD_ROWS_LIST = 10;
 
 
     RecyclerView recyclerView;
     ImageAdapter imageAdapter;
     List<Uri> imageUris = new ArrayList<>();
+    GalleryPagedList galleryList;
 
     Spinner albumSpinner;
     FloatingActionButton fabAddAlbum;
@@ -75,9 +93,11 @@ public class MainActivity extends AppCompatActivity {
     ImageButton btnRenameAlbum;
     ImageButton btnSearch;
 
-    SharedPreferences prefs;
-    Map<String, List<String>> albums = new HashMap<>();
+    AlbumDao albumDao;
+    Map<String, Album> albums = new LinkedHashMap<>();
     String currentAlbum = "All Photos";
+    // Album to select the next time the album list is re-emitted (e.g. one just created)
+    String pendingAlbumSelection;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -88,9 +108,12 @@ public class MainActivity extends AppCompatActivity {
         // Initialize ALL UI elements
         initializeUI();
 
-        prefs = getSharedPreferences("PhotoAlbums", MODE_PRIVATE);
-        loadAlbums();
+        albumDao = AppDatabase.getDatabase(this).albumDao();
         setupAlbumSpinner();
+        observeAlbums();
+        // Loads tag completions in the background before the search header first opens
+        TagDictionary.get(this);
+        GalleryIndex.get(this).addListener(galleryListener);
         checkAndLoadImages();
 
         setupClickListeners();
@@ -98,7 +121,7 @@ public class MainActivity extends AppCompatActivity {
         getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
             @Override
             public void handleOnBackPressed() {
-                if (isSearching) {
+                if (searchHeader.getVisibility() == View.VISIBLE) {
                     cancelSearch();
                 } else {
                     setEnabled(false);
@@ -112,6 +135,11 @@ public class MainActivity extends AppCompatActivity {
         // Initialize search UI elements
         searchHeader = findViewById(R.id.searchHeader);
         tvSearchResults = findViewById(R.id.tvSearchResults);
+        searchInput = findViewById(R.id.etSearchQuery);
+        // Completes the term under the cursor from the tag dictionary
+        searchInput.setAdapter(new TagSuggestionAdapter(this));
+        searchInput.setTokenizer(new TagQueryTokenizer());
+        liveSearch = new LiveTagSearch(this);
         btnCancelSearch = findViewById(R.id.btnCancelSearch);
 
         // UI references
@@ -120,6 +148,7 @@ public class MainActivity extends AppCompatActivity {
         fabAddAlbum = findViewById(R.id.fabAddAlbum);
         btnRenameAlbum = findViewById(R.id.btnRenameAlbum);
         btnDeleteAlbum = findViewById(R.id.btnDeleteAlbum);
+        btnAlbumList = findViewById(R.id.btnAlbumList);
         btnAddPhoto = findViewById(R.id.btnAddPhoto);
         btnSearch = findViewById(R.id.btnSearch);
         btnToggleView = findViewById(R.id.btnToggleView);
@@ -134,21 +163,51 @@ public class MainActivity extends AppCompatActivity {
         // Initialize adapter with empty list
         imageAdapter = new ImageAdapter(this, new ArrayList<>());
         recyclerView.setAdapter(imageAdapter);
+        installPreloader();
+        // Grid thumbnails are decoded at the real cell size, known once the list is measured
+        recyclerView.addOnLayoutChangeListener((v, left, top, right, bottom,
+                                                oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (right - left != oldRight - oldLeft) {
+                updateGridCellSize();
+            }
+        });
         //Slideshow button
         btnSlideshow = findViewById(R.id.btnSlideshow);
+        btnDuplicates = findViewById(R.id.btnDuplicates);
     }
 
     private void setupClickListeners() {
         // Set up cancel search button
         btnCancelSearch.setOnClickListener(v -> cancelSearch());
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onSearchTextChanged(s.toString().trim());
+            }
+        });
+        searchInput.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId != EditorInfo.IME_ACTION_SEARCH) return false;
+            submitSearch();
+            return true;
+        });
 
         fabAddAlbum.setOnClickListener(v -> showAddAlbumDialog());
         btnRenameAlbum.setOnClickListener(v -> showRenameAlbumDialog());
         btnDeleteAlbum.setOnClickListener(v -> showDeleteAlbumDialog());
+        btnAlbumList.setOnClickListener(v -> startActivity(new Intent(this, AlbumListActivity.class)));
         btnAddPhoto.setOnClickListener(v -> openImagePicker());
-        btnSearch.setOnClickListener(v -> showSearchDialog());
+        btnSearch.setOnClickListener(v -> openSearch());
         btnToggleView.setOnClickListener(v -> toggleView());
         btnSlideshow.setOnClickListener(v -> showSlideshowDialog());
+        btnDuplicates.setOnClickListener(v -> startActivity(new Intent(this, DuplicatesActivity.class)));
     }
 
     private void showDeleteAlbumDialog() {
@@ -161,66 +220,53 @@ public class MainActivity extends AppCompatActivity {
                 .setTitle("Delete Album")
                 .setMessage("Are you sure you want to delete the album '" + currentAlbum + "'?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    albums.remove(currentAlbum);
-                    saveAlbums();
-                    setupAlbumSpinner();
+                    Album album = albums.get(currentAlbum);
+                    if (album == null) return;
 
                     // Switch to All Photos after deletion
                     currentAlbum = "All Photos";
                     albumSpinner.setSelection(0);
                     loadImagesFromGallery();
 
-                    Toast.makeText(this, "Album deleted successfully", Toast.LENGTH_SHORT).show();
+                    // Membership rows go with it through the AlbumPhoto foreign key cascade
+                    TaskScheduler.execute(TaskScheduler.Lane.UI, () -> {
+                        albumDao.deleteById(album.id);
+                        showToast("Album deleted successfully");
+                    });
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
     // Album Management
-    private void loadAlbums() {
-        albums.clear();
-        Map<String, ?> all = prefs.getAll();
-        for (String key : all.keySet()) {
-            String urisString = prefs.getString(key, "");
-            List<String> uris = new ArrayList<>();
-            if (!urisString.isEmpty()) {
-                String[] uriArray = urisString.split(",");
-                for (String u : uriArray) {
-                    if (!u.isEmpty()) {
-                        uris.add(u);
-                    }
-                }
+    // Albums live in Room; the legacy SharedPreferences copy is imported once on first launch.
+    // The observer re-runs after every insert/rename/delete, so writers never reload by hand.
+    private void observeAlbums() {
+        TaskScheduler.execute(TaskScheduler.Lane.UI, () ->
+                AlbumPrefsImporter.importIfNeeded(this, AppDatabase.getDatabase(this)));
+
+        albumDao.observeAllAlbums().observe(this, loaded -> {
+            albums.clear();
+            for (Album album : loaded) {
+                albums.put(album.name, album);
             }
-            albums.put(key, uris);
-        }
-
-        if (!albums.containsKey("All Photos")) {
-            albums.put("All Photos", new ArrayList<>());
-        }
-    }
-
-    private void saveAlbums() {
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.clear();
-        for (Map.Entry<String, List<String>> entry : albums.entrySet()) {
-            StringBuilder sb = new StringBuilder();
-            for (String u : entry.getValue()) {
-                if (!u.isEmpty()) {
-                    sb.append(u).append(",");
+            setupAlbumSpinner();
+
+            String selectName = pendingAlbumSelection != null ? pendingAlbumSelection : currentAlbum;
+            pendingAlbumSelection = null;
+            for (int i = 0; i < albumSpinner.getCount(); i++) {
+                if (albumSpinner.getItemAtPosition(i).equals(selectName)) {
+                    albumSpinner.setSelection(i);
+                    break;
                 }
             }
-            // Remove trailing comma
-            String result = sb.toString();
-            if (result.endsWith(",")) {
-                result = result.substring(0, result.length() - 1);
-            }
-            editor.putString(entry.getKey(), result);
-        }
-        editor.apply();
+        });
     }
 
     private void setupAlbumSpinner() {
-        List<String> albumNames = new ArrayList<>(albums.keySet());
+        List<String> albumNames = new ArrayList<>();
+        albumNames.add("All Photos");
+        albumNames.addAll(albums.keySet());
         ArrayAdapter<String> adapter = new ArrayAdapter<>(this,
                 android.R.layout.simple_spinner_dropdown_item, albumNames);
         albumSpinner.setAdapter(adapter);
@@ -231,7 +277,7 @@ public class MainActivity extends AppCompatActivity {
                 String selectedAlbum = albumNames.get(position);
                 if (!selectedAlbum.equals(currentAlbum)) {
                     currentAlbum = selectedAlbum;
-                    if (isSearching) {
+                    if (searchHeader.getVisibility() == View.VISIBLE) {
                         cancelSearch();
                     }
                     if (currentAlbum.equals("All Photos")) {
@@ -258,18 +304,10 @@ public class MainActivity extends AppCompatActivity {
 
         builder.setPositiveButton("Create", (dialog, which) -> {
             String name = input.getText().toString().trim();
-            if (!name.isEmpty() && !albums.containsKey(name)) {
-                albums.put(name, new ArrayList<>());
-                saveAlbums();
-                setupAlbumSpinner();
-
-                // Select the new album
-                for (int i = 0; i < albumSpinner.getCount(); i++) {
-                    if (albumSpinner.getItemAtPosition(i).equals(name)) {
-                        albumSpinner.setSelection(i);
-                        break;
-                    }
-                }
+            if (!name.isEmpty() && !name.equals("All Photos") && !albums.containsKey(name)) {
+                // Select the new album once it shows up in the album list
+                pendingAlbumSelection = name;
+                TaskScheduler.execute(TaskScheduler.Lane.UI, () -> albumDao.insert(new Album(name)));
 
                 Toast.makeText(this, "Album created: " + name, Toast.LENGTH_SHORT).show();
             } else {
@@ -297,19 +335,11 @@ public class MainActivity extends AppCompatActivity {
 
         builder.setPositiveButton("Rename", (dialog, which) -> {
             String newName = input.getText().toString().trim();
-            if (!newName.isEmpty() && !albums.containsKey(newName)) {
-                List<String> images = albums.remove(currentAlbum);
-                albums.put(newName, images);
-                saveAlbums();
-                setupAlbumSpinner();
-
-                // Select the renamed album
-                for (int i = 0; i < albumSpinner.getCount(); i++) {
-                    if (albumSpinner.getItemAtPosition(i).equals(newName)) {
-                        albumSpinner.setSelection(i);
-                        break;
-                    }
-                }
+            Album album = albums.get(currentAlbum);
+            if (album != null && !newName.isEmpty() && !newName.equals("All Photos") && !albums.containsKey(newName)) {
+                // Membership rows reference the album id, so a rename is a single-row update
+                currentAlbum = newName;
+                TaskScheduler.execute(TaskScheduler.Lane.UI, () -> albumDao.renameAlbum(album.id, newName));
 
                 Toast.makeText(this, "Album renamed to: " + newName, Toast.LENGTH_SHORT).show();
             } else {
@@ -339,18 +369,24 @@ public class MainActivity extends AppCompatActivity {
 
         if (requestCode == REQUEST_CODE_PICK_IMAGE && resultCode == Activity.RESULT_OK && data != null) {
             Uri selectedImage = data.getData();
-            if (selectedImage != null) {
-                List<String> albumImages = albums.get(currentAlbum);
+            Album album = albums.get(currentAlbum);
+            if (selectedImage != null && album != null) {
                 String imageUriString = selectedImage.toString();
-
-                if (!albumImages.contains(imageUriString)) {
-                    albumImages.add(imageUriString);
-                    saveAlbums();
-                    showAlbumPhotos();
-                    Toast.makeText(this, "Photo added to " + currentAlbum, Toast.LENGTH_SHORT).show();
-                } else {
-                    Toast.makeText(this, "Photo already in album", Toast.LENGTH_SHORT).show();
-                }
+                String albumName = album.name;
+
+                // Single-row insert; the (album_id, uri) key rejects duplicates
+                TaskScheduler.execute(TaskScheduler.Lane.UI, () -> {
+                    boolean added = albumDao.addPhoto(
+                            new AlbumPhoto(album.id, imageUriString, System.currentTimeMillis())) != -1;
+                    runOnUiThread(() -> {
+                        if (added) {
+                            showAlbumPhotos();
+                            Toast.makeText(this, "Photo added to " + albumName, Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(this, "Photo already in album", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                });
             }
         }
     }
@@ -380,47 +416,92 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    // Once GalleryIndex has its first snapshot, "All Photos" is served from memory.
+    // Until then only the first page is read before the grid is shown; GalleryPagedList
+    // reads the rest as the RecyclerView binds positions near them.
     private void loadImagesFromGallery() {
-        new Thread(() -> {
-            List<Uri> loadedUris = new ArrayList<>();
-            Uri uri = MediaStore.Images.Media.EXTERNAL_CONTENT_URI;
-            String[] projection = {MediaStore.Images.Media._ID};
-
-            try (Cursor cursor = getContentResolver().query(
-                    uri,
-                    projection,
-                    null,
-                    null,
-                    MediaStore.Images.Media.DATE_ADDED + " DESC"
-            )) {
-                if (cursor != null) {
-                    int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
-                    while (cursor.moveToNext()) {
-                        long id = cursor.getLong(idColumn);
-                        Uri contentUri = ContentUris.withAppendedId(uri, id);
-                        loadedUris.add(contentUri);
-                    }
-                }
+        GalleryIndex galleryIndex = GalleryIndex.get(this);
+        GallerySnapshot snapshot = galleryIndex.getSnapshot();
+        if (snapshot != null) {
+            showGallerySnapshot(snapshot);
+            return;
+        }
+        galleryIndex.ensureBuilt();
+        // Hashes whatever the index mirrors, once storage access is known to be granted
+        DuplicateIndex.get(this).ensureStarted();
+
+        RequestGeneration.Token token = contentGeneration.next();
+        TaskScheduler.execute(TaskScheduler.Lane.UI, token, () -> {
+            GalleryPagedList loadedList = null;
+            try {
+                loadedList = GalleryPagedList.open(getContentResolver(), token.cancellationSignal());
             } catch (Exception e) {
-                Log.e(TAG, "Error loading images from gallery", e);
+                if (!token.isCancelled()) {
+                    Log.e(TAG, "Error loading images from gallery", e);
+                }
             }
 
-            List<Uri> finalLoadedUris = loadedUris;
+            GalleryPagedList finalLoadedList = loadedList;
             runOnUiThread(() -> {
-                imageUris = finalLoadedUris;
-                imageAdapter.updateData(imageUris);
+                if (finalLoadedList == null) return;
+                // Destroyed, or the user moved to an album or a search while the query ran
+                if (isDestroyed() || !token.isCurrent()) {
+                    finalLoadedList.close();
+                    return;
+                }
+                releaseGalleryList();
+                galleryList = finalLoadedList;
+                galleryList.setOnPageLoadedListener((start, count) -> {
+                    if (imageAdapter.isShowing(galleryList)) {
+                        imageAdapter.notifyItemRangeChanged(start, count);
+                    }
+                });
+
+                imageUris = galleryList;
+                imageAdapter.updateData(imageUris, Selection.gallery());
                 applyCurrentViewType();
                 Log.d(TAG, "Loaded " + imageUris.size() + " images from gallery");
             });
-        }).start();
+        });
+    }
+
+    private void showGallerySnapshot(GallerySnapshot snapshot) {
+        contentGeneration.next();
+        releaseGalleryList();
+        imageUris = snapshot;
+        // The pager pages over the same immutable id array the grid shows, and falls back
+        // to GalleryIndex when the selection is restored without it
+        imageAdapter.updateData(imageUris, Selection.gallery(snapshot.ids));
+        applyCurrentViewType();
+        Log.d(TAG, "Showing " + snapshot.size() + " images from gallery index");
+    }
+
+    // Index finished its first scan or applied a MediaStore change
+    private final GalleryIndex.Listener galleryListener = snapshot -> {
+        if (currentAlbum.equals("All Photos") && !isSearching && imageUris != snapshot) {
+            showGallerySnapshot(snapshot);
+        }
+    };
+
+    private void releaseGalleryList() {
+        if (galleryList != null) {
+            galleryList.close();
+            galleryList = null;
+        }
     }
 
     private void showAlbumPhotos() {
-        List<String> uriStrings = albums.get(currentAlbum);
-        List<Uri> albumUris = new ArrayList<>();
+        Album album = albums.get(currentAlbum);
+        if (album == null) return;
+        String albumName = album.name;
+
+        RequestGeneration.Token token = contentGeneration.next();
+        TaskScheduler.execute(TaskScheduler.Lane.UI, token, () -> {
+            List<String> uriStrings = albumDao.getPhotoUris(album.id);
+            List<Uri> albumUris = new ArrayList<>();
 
-        if (uriStrings != null) {
             for (String uriString : uriStrings) {
+                if (token.isCancelled()) return;
                 try {
                     if (!uriString.isEmpty()) {
                         Uri uri = Uri.parse(uriString);
@@ -430,11 +511,17 @@ public class MainActivity extends AppCompatActivity {
                     Log.e(TAG, "Invalid URI in album: " + uriString, e);
                 }
             }
-        }
 
-        imageAdapter.updateData(albumUris);
-        applyCurrentViewType();
-        Log.d(TAG, "Showing " + albumUris.size() + " photos in album: " + currentAlbum);
+            runOnUiThread(() -> {
+                // The user may have switched albums or started a search while this was loading
+                if (!token.isCurrent()) return;
+                releaseGalleryList();
+                imageUris = albumUris;
+                imageAdapter.updateData(albumUris, Selection.album(album.id));
+                applyCurrentViewType();
+                Log.d(TAG, "Showing " + albumUris.size() + " photos in album: " + albumName);
+            });
+        });
     }
 
     // View Toggle Methods
@@ -444,6 +531,7 @@ public class MainActivity extends AppCompatActivity {
         if (isGridView) {
             // Switch to grid view
             recyclerView.setLayoutManager(gridLayoutManager);
+            installPreloader();
             btnToggleView.setImageResource(R.drawable.ic_list_view);
             btnToggleView.setContentDescription("Switch to list view");
             if (imageAdapter != null) {
@@ -453,6 +541,7 @@ public class MainActivity extends AppCompatActivity {
         } else {
             // Switch to list view
             recyclerView.setLayoutManager(listLayoutManager);
+            installPreloader();
             btnToggleView.setImageResource(R.drawable.ic_grid_view);
             btnToggleView.setContentDescription("Switch to grid view");
             if (imageAdapter != null) {
@@ -462,14 +551,44 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    // Decodes the next rows ahead of the scroll direction. The preload window is fixed per
+    // preloader, so it is rebuilt whenever the grid/list mode changes.
+    private void installPreloader() {
+        if (preloader != null) {
+            recyclerView.removeOnScrollListener(preloader);
+        }
+        int maxPreload = isGridView
+                ? PRELOAD_ROWS_GRID * gridLayoutManager.getSpanCount()
+                : PRELOAD_ROWS_LIST;
+        ImagePreloadProvider provider = new ImagePreloadProvider(this, imageAdapter);
+        preloader = new RecyclerViewPreloader<>(Glide.with(this), provider, provider, maxPreload);
+        recyclerView.addOnScrollListener(preloader);
+    }
+
+    // item_image_grid.xml: 4dp padding around a 2dp-margin ImageView that is 150dp tall
+    private void updateGridCellSize() {
+        float density = getResources().getDisplayMetrics().density;
+        int columnWidth = (recyclerView.getWidth() - recyclerView.getPaddingLeft()
+                - recyclerView.getPaddingRight()) / gridLayoutManager.getSpanCount();
+        int inset = Math.round((4 + 2) * 2 * density);
+        imageAdapter.setGridCellSize(columnWidth - inset, Math.round(150 * density));
+    }
+
+    // No-op when nothing changed, so reloads don't force a relayout of every row
     private void applyCurrentViewType() {
         if (isGridView) {
-            recyclerView.setLayoutManager(gridLayoutManager);
+            if (recyclerView.getLayoutManager() != gridLayoutManager) {
+                recyclerView.setLayoutManager(gridLayoutManager);
+                installPreloader();
+            }
             if (imageAdapter != null) {
                 imageAdapter.setViewType(ImageAdapter.VIEW_TYPE_GRID);
             }
         } else {
-            recyclerView.setLayoutManager(listLayoutManager);
+            if (recyclerView.getLayoutManager() != listLayoutManager) {
+                recyclerView.setLayoutManager(listLayoutManager);
+                installPreloader();
+            }
             if (imageAdapter != null) {
                 imageAdapter.setViewType(ImageAdapter.VIEW_TYPE_LIST);
             }
@@ -477,126 +596,114 @@ public class MainActivity extends AppCompatActivity {
     }
 
     // Search Functionality
-    private void showSearchResultsHeader(String query, int resultCount) {
-        isSearching = true;
+    // The header searches as the user types: each keystroke drops the in-flight search and
+    // restarts a short debounce; LiveTagSearch refines the previous results when the query
+    // only grew, and ImageAdapter diffs the new list against what is on screen.
+    private void openSearch() {
+        searchHeader.setVisibility(View.VISIBLE);
+        searchInput.requestFocus();
+        InputMethodManager imm = getSystemService(InputMethodManager.class);
+        if (imm != null) {
+            imm.showSoftInput(searchInput, InputMethodManager.SHOW_IMPLICIT);
+        }
+    }
+
+    private void onSearchTextChanged(String query) {
+        // e.g. a trailing space; a search still pending for this query stays scheduled
+        if (query.equals(currentSearchQuery)) return;
+        searchHandler.removeCallbacks(pendingSearch);
         currentSearchQuery = query;
+        if (query.isEmpty()) {
+            clearSearchResults();
+            return;
+        }
+        // Results for what was typed before are no longer wanted
+        contentGeneration.next();
+        searchHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
+
+    // IME search action: run now, against the database rather than refined results
+    private void submitSearch() {
+        searchHandler.removeCallbacks(pendingSearch);
+        hideKeyboard();
+        if (currentSearchQuery.isEmpty()) return;
+        liveSearch.reset();
+        performTagSearch(currentSearchQuery);
+    }
 
+    private void showSearchResultsHeader(String query, int resultCount) {
         String resultsText;
         if (resultCount == 0) {
             resultsText = "No results for: \"" + query + "\"";
         } else {
             resultsText = resultCount + " results for: \"" + query + "\"";
         }
-
         tvSearchResults.setText(resultsText);
-        searchHeader.setVisibility(View.VISIBLE);
-
-        RelativeLayout.LayoutParams params = (RelativeLayout.LayoutParams) recyclerView.getLayoutParams();
-        params.removeRule(RelativeLayout.BELOW); // Clear existing rules
-        params.addRule(RelativeLayout.BELOW, R.id.searchHeader);
-        recyclerView.setLayoutParams(params);
-
-        recyclerView.requestLayout();
     }
 
-    private void cancelSearch() {
-        isSearching = false;
+    // Query emptied: back to whatever the album spinner selects, header stays open
+    private void clearSearchResults() {
+        searchHandler.removeCallbacks(pendingSearch);
         currentSearchQuery = "";
-        searchHeader.setVisibility(View.GONE);
-
-        RelativeLayout.LayoutParams params = (RelativeLayout.LayoutParams) recyclerView.getLayoutParams();
-        params.removeRule(RelativeLayout.BELOW); // Clear existing rules
-        params.addRule(RelativeLayout.BELOW, R.id.albumHeader);
-        recyclerView.setLayoutParams(params);
-
-        recyclerView.requestLayout();
-
-        // Reload the original content based on current album
+        liveSearch.reset();
+        tvSearchResults.setText("Type a tag to search");
+        if (!isSearching) return;
+        isSearching = false;
+        searchSelection = null;
         if (currentAlbum.equals("All Photos")) {
             loadImagesFromGallery();
         } else {
             showAlbumPhotos();
         }
-
         applyCurrentViewType();
-        showToast("Search cancelled");
-        Log.d(TAG, "Search cancelled, returning to: " + currentAlbum);
-    }
-
-    private void showSearchDialog() {
-        // If already searching, offer to cancel or new search
-        if (isSearching) {
-            new AlertDialog.Builder(this)
-                    .setTitle("Search Active")
-                    .setMessage("You're currently searching for: \"" + currentSearchQuery + "\"")
-                    .setPositiveButton("New Search", (dialog, which) -> showSearchInputDialog())
-                    .setNegativeButton("Cancel Search", (dialog, which) -> cancelSearch())
-                    .setNeutralButton("Close", null)
-                    .show();
-        } else {
-            showSearchInputDialog();
-        }
     }
 
-    private void showSearchInputDialog() {
-        try {
-            AlertDialog.Builder builder = new AlertDialog.Builder(this);
-            builder.setTitle("Search Photos by Tag");
-
-            final EditText input = new EditText(this);
-            input.setHint("e.g., vacation, family, beach");
-            builder.setView(input);
-
-            builder.setPositiveButton("Search", (dialog, which) -> {
-                String searchText = input.getText().toString().trim();
-                if (!searchText.isEmpty()) {
-                    performTagSearch(searchText);
-                } else {
-                    showToast("Please enter a search term");
-                }
-            });
+    private void cancelSearch() {
+        searchHeader.setVisibility(View.GONE);
+        hideKeyboard();
+        // Emptying the field restores the album or gallery through onSearchTextChanged
+        searchInput.setText("");
+        Log.d(TAG, "Search closed, returning to: " + currentAlbum);
+    }
 
-            builder.setNegativeButton("Cancel", null);
-            builder.show();
-        } catch (Exception e) {
-            Log.e(TAG, "Error showing search dialog", e);
-            showToast("Error opening search");
+    private void hideKeyboard() {
+        InputMethodManager imm = getSystemService(InputMethodManager.class);
+        if (imm != null) {
+            imm.hideSoftInputFromWindow(searchInput.getWindowToken(), 0);
         }
     }
 
     private void performTagSearch(String keyword) {
-        showToast("Searching for: " + keyword);
+        // Set now so a gallery index update can't replace the grid before results arrive
+        isSearching = true;
 
-        databaseExecutor.execute(() -> {
+        RequestGeneration.Token token = contentGeneration.next();
+        TaskScheduler.execute(TaskScheduler.Lane.UI, token, () -> {
             try {
-                AppDatabase db = AppDatabase.getDatabase(this);
-                PhotoDao photoDao = db.photoDao();
-                List<Photo> photos = photoDao.searchByTag(keyword);
-
-                List<Uri> searchResults = new ArrayList<>();
-                for (Photo photo : photos) {
-                    try {
-                        Uri uri = Uri.parse(photo.uri);
-                        searchResults.add(uri);
-                    } catch (Exception e) {
-                        Log.e(TAG, "Invalid URI: " + photo.uri, e);
-                    }
-                }
+                List<Uri> searchResults = liveSearch.search(keyword);
+                if (token.isCancelled()) return;
 
+                Selection selection = Selection.search(keyword, Selection.idsOf(searchResults));
                 runOnUiThread(() -> {
-                    if (searchResults.isEmpty()) {
-                        showToast("No photos found with tag: " + keyword);
-                        showSearchResultsHeader(keyword, 0);
-                    } else {
-                        showSearchResultsHeader(keyword, searchResults.size());
-                    }
-                    imageAdapter.updateData(searchResults);
+                    // Cancelled, or superseded by a newer keystroke
+                    if (!token.isCurrent()) return;
+                    searchSelection = selection;
+                    showSearchResultsHeader(keyword, searchResults.size());
+                    // Diffed off the main thread; cells still in the results stay put
+                    imageAdapter.updateData(searchResults, selection);
                     applyCurrentViewType();
                 });
 
+            } catch (IllegalArgumentException e) {
+                // A boolean query that isn't finished yet, e.g. "(dog OR"; keep the last results
+                runOnUiThread(() -> {
+                    if (!token.isCurrent()) return;
+                    tvSearchResults.setText("Keep typing: " + e.getMessage());
+                });
             } catch (Exception e) {
                 Log.e(TAG, "Search error", e);
                 runOnUiThread(() -> {
+                    if (!token.isCurrent()) return;
                     showToast("Search failed: " + e.getMessage());
                     cancelSearch();
                 });
@@ -605,59 +712,46 @@ public class MainActivity extends AppCompatActivity {
     }
     //Show Slideshow Options
     private void showSlideshowDialog() {
-        int currentImageCount = (imageUris != null) ? imageUris.size() : 0;
+        Selection selection = currentSelection();
+        int currentImageCount = selection.knownSize() >= 0
+                ? selection.knownSize()
+                : (imageUris != null) ? imageUris.size() : 0;
 
         if (currentImageCount == 0) {
             Toast.makeText(this, "No images available for slideshow", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        //max 50 images
-        int imagesToUse = Math.min(50, currentImageCount);
-
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Create Slideshow");
-
-        if (currentImageCount > 50) {
-            builder.setMessage("You have " + currentImageCount + " images. Slideshow have a limit of " + imagesToUse + " images for better performance.");
-        } else {
-            builder.setMessage("Start slideshow with " + imagesToUse + " images?");
-        }
+        builder.setMessage("Start slideshow with " + currentImageCount + " images?");
 
         builder.setPositiveButton("Start Slideshow", (dialog, which) -> {
-            startSlideshow(imageUris);
+            startSlideshow(selection);
         });
 
         builder.setNegativeButton("Cancel", null);
         builder.show();
     }
-    private void startSlideshow(List<Uri> uris) {
-        Log.d(TAG, "Starting slideshow with " + (uris != null ? uris.size() : 0) + " images");
 
-        if (uris == null || uris.isEmpty()) {
-            Toast.makeText(this, "No images available for slideshow", Toast.LENGTH_SHORT).show();
-            return;
+    // What is on screen: the search results, the current album or the whole gallery
+    private Selection currentSelection() {
+        if (isSearching && searchSelection != null) {
+            return searchSelection;
+        }
+        Album album = albums.get(currentAlbum);
+        if (currentAlbum.equals("All Photos") || album == null) {
+            return Selection.gallery();
         }
+        return Selection.album(album.id);
+    }
 
+    private void startSlideshow(Selection selection) {
         try {
-            // 50 IMAGES MAXIMUM
-            List<Uri> limitedUris = uris.subList(0, Math.min(50, uris.size()));
-
-            if (uris.size() > 50) {
-                Toast.makeText(this, "Using first 50 images", Toast.LENGTH_SHORT).show();
-            }
-
             Intent intent = new Intent(this, SlideShowActivity.class);
-            ArrayList<String> uriStrings = new ArrayList<>();
-            for (Uri uri : limitedUris) {
-                if (uri != null) {
-                    uriStrings.add(uri.toString());
-                }
-            }
-
-            intent.putStringArrayListExtra("slideUris", uriStrings);
+            SelectionRegistry.putInto(intent, selection);
             startActivity(intent);
-            Log.d(TAG, "Slideshow started with " + limitedUris.size() + " images");
+            Log.d(TAG, "Slideshow started for " + currentAlbum);
 
         } catch (Exception e) {
             Log.e(TAG, "Error starting slideshow: " + e.getMessage(), e);
@@ -683,12 +777,23 @@ public class MainActivity extends AppCompatActivity {
         runOnUiThread(() -> Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show());
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Tags may have been edited in FullScreenActivity; only changed rows are rebound
+        imageAdapter.refreshDetails();
+        // ...and the next keystroke must not refine results from before the edit
+        liveSearch.reset();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (databaseExecutor != null) {
-            databaseExecutor.shutdown();
-        }
+        searchHandler.removeCallbacks(pendingSearch);
+        // Drops the gallery, album or search load in flight; album and tag writes have no owner and still run
+        contentGeneration.next();
+        GalleryIndex.get(this).removeListener(galleryListener);
+        releaseGalleryList();
     }
 }
 
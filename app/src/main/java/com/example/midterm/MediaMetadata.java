@@ -0,0 +1,74 @@
+package com.example.midterm;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// Local mirror of the MediaStore columns the UI sorts, filters and displays by.
+// Kept in sync by GalleryIndex so screens never query the ContentResolver per item.
+@Entity(tableName = "MediaMetadata",
+        indices = {@Index(value = {"date_taken"}), @Index(value = {"bucket_id"}), @Index(value = {"indexed_at"})})
+public class MediaMetadata {
+    // MediaStore _ID
+    @PrimaryKey
+    @ColumnInfo(name = "media_id")
+    public long mediaId;
+
+    @ColumnInfo(name = "display_name")
+    public String displayName;
+
+    // Milliseconds since epoch, 0 when unknown
+    @ColumnInfo(name = "date_taken")
+    public long dateTaken;
+
+    // Seconds since epoch, as MediaStore stores them
+    @ColumnInfo(name = "date_added")
+    public long dateAdded;
+
+    @ColumnInfo(name = "date_modified")
+    public long dateModified;
+
+    @ColumnInfo(name = "size")
+    public long size;
+
+    @ColumnInfo(name = "width")
+    public int width;
+
+    @ColumnInfo(name = "height")
+    public int height;
+
+    @ColumnInfo(name = "mime_type")
+    public String mimeType;
+
+    @ColumnInfo(name = "bucket_id")
+    public long bucketId;
+
+    @ColumnInfo(name = "bucket_name")
+    public String bucketName;
+
+    // Time of the sync that last wrote this row; rows older than a full scan are stale
+    @ColumnInfo(name = "indexed_at")
+    public long indexedAt;
+
+    // MediaStore _ID behind a content://media/... uri, or -1 for uris from other providers
+    public static long mediaIdOf(Uri uri) {
+        if (uri == null || !MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+            return -1;
+        }
+        try {
+            return ContentUris.parseId(uri);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    // Date to show and sort by: when the photo was taken, falling back to when it was added
+    public long getDisplayDateMillis() {
+        return dateTaken > 0 ? dateTaken : dateAdded * 1000L;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.midterm;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Dao
+public interface MediaMetadataDao {
+    // Each call is one transaction; GalleryIndex hands over rows in batches
+    @Upsert
+    void upsertAll(List<MediaMetadata> rows);
+
+    @Query("DELETE FROM MediaMetadata WHERE media_id IN (:mediaIds)")
+    void deleteByIds(List<Long> mediaIds);
+
+    // Drops rows a full scan did not touch, i.e. images no longer in MediaStore
+    @Query("DELETE FROM MediaMetadata WHERE indexed_at < :scanStartedAt")
+    int deleteNotIndexedSince(long scanStartedAt);
+
+    @Query("SELECT * FROM MediaMetadata WHERE media_id IN (:mediaIds)")
+    List<MediaMetadata> getByIds(List<Long> mediaIds);
+
+    default void deleteAll(List<Long> mediaIds) {
+        for (int start = 0; start < mediaIds.size(); start += PhotoDao.MAX_QUERY_ARGS) {
+            deleteByIds(mediaIds.subList(start, Math.min(mediaIds.size(), start + PhotoDao.MAX_QUERY_ARGS)));
+        }
+    }
+
+    // Rows keyed by media id, fetched in chunked IN (...) queries on the primary key
+    default Map<Long, MediaMetadata> getByIdMap(List<Long> mediaIds) {
+        Map<Long, MediaMetadata> byId = new HashMap<>();
+        for (int start = 0; start < mediaIds.size(); start += PhotoDao.MAX_QUERY_ARGS) {
+            List<Long> chunk = new ArrayList<>(
+                    mediaIds.subList(start, Math.min(mediaIds.size(), start + PhotoDao.MAX_QUERY_ARGS)));
+            for (MediaMetadata row : getByIds(chunk)) {
+                byId.put(row.mediaId, row);
+            }
+        }
+        return byId;
+    }
+}
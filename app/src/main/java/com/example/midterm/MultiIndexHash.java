@@ -0,0 +1,102 @@
+package com.example.midterm;
+
+// Multi-index hashing over 64-bit hashes under Hamming distance. Each hash is cut into
+// CHUNKS disjoint pieces of 7 or 8 bits. Two hashes at most MAX_RADIUS bits apart cannot
+// differ in every piece, so by pigeonhole they agree exactly on at least one of them.
+// Rows are bucketed by the value of each piece, and only rows sharing a bucket are
+// compared, which replaces both the all-pairs scan and a tree search that barely prunes
+// at this radius. A pair is reported once, from the first piece it agrees on.
+final class MultiIndexHash {
+    static final int CHUNKS = 9;
+    // Largest radius the pigeonhole argument covers
+    static final int MAX_RADIUS = CHUNKS - 1;
+
+    public interface PairVisitor {
+        // a < b, both row indexes into the hashes the index was built from
+        void visit(int a, int b, int distance);
+    }
+
+    private static final int[] SHIFT = new int[CHUNKS];
+    private static final long[] MASK = new long[CHUNKS];
+
+    static {
+        int shift = 0;
+        for (int c = 0; c < CHUNKS; c++) {
+            int width = 64 / CHUNKS + (c < 64 % CHUNKS ? 1 : 0);
+            SHIFT[c] = shift;
+            MASK[c] = (1L << width) - 1;
+            shift += width;
+        }
+    }
+
+    // Per piece: row indexes ordered by the piece's value (ascending index within a value),
+    // their hashes in the same order so a bucket is scanned sequentially, and where each
+    // value's bucket starts in that order
+    private final int[][] rowsByChunk = new int[CHUNKS][];
+    private final long[][] hashesByChunk = new long[CHUNKS][];
+    private final int[][] bucketStarts = new int[CHUNKS][];
+
+    MultiIndexHash(long[] hashes) {
+        int n = hashes.length;
+        for (int c = 0; c < CHUNKS; c++) {
+            // Counting sort by piece value keeps rows in index order inside each bucket
+            int buckets = (int) MASK[c] + 1;
+            int[] starts = new int[buckets + 1];
+            for (long hash : hashes) {
+                starts[chunk(hash, c) + 1]++;
+            }
+            for (int v = 0; v < buckets; v++) {
+                starts[v + 1] += starts[v];
+            }
+            int[] next = new int[buckets];
+            System.arraycopy(starts, 0, next, 0, buckets);
+            int[] rows = new int[n];
+            long[] sorted = new long[n];
+            for (int i = 0; i < n; i++) {
+                int at = next[chunk(hashes[i], c)]++;
+                rows[at] = i;
+                sorted[at] = hashes[i];
+            }
+            rowsByChunk[c] = rows;
+            hashesByChunk[c] = sorted;
+            bucketStarts[c] = starts;
+        }
+    }
+
+    // Calls visitor once for every pair of rows whose hashes are within radius of each other
+    public void forEachPair(int radius, PairVisitor visitor) {
+        if (radius > MAX_RADIUS) {
+            throw new IllegalArgumentException("Radius " + radius + " exceeds " + MAX_RADIUS);
+        }
+        for (int c = 0; c < CHUNKS; c++) {
+            int[] rows = rowsByChunk[c];
+            long[] sorted = hashesByChunk[c];
+            int[] starts = bucketStarts[c];
+            for (int v = 0; v + 1 < starts.length; v++) {
+                int to = starts[v + 1];
+                for (int i = starts[v]; i < to; i++) {
+                    long hashA = sorted[i];
+                    for (int j = i + 1; j < to; j++) {
+                        long diff = hashA ^ sorted[j];
+                        int distance = Long.bitCount(diff);
+                        // Pairs that also agree on an earlier piece were reported there
+                        if (distance <= radius && firstEqualChunk(diff) == c) {
+                            visitor.visit(rows[i], rows[j], distance);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int chunk(long hash, int c) {
+        return (int) ((hash >>> SHIFT[c]) & MASK[c]);
+    }
+
+    private static int firstEqualChunk(long diff) {
+        for (int c = 0; c < CHUNKS; c++) {
+            if (((diff >>> SHIFT[c]) & MASK[c]) == 0) return c;
+        }
+        return CHUNKS;
+    }
+}
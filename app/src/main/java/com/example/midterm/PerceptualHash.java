@@ -0,0 +1,135 @@
+package com.example.midterm;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+// dHash and pHash over a tiny decode of an image. Both are 64-bit fingerprints that stay
+// within a few bits of each other for resized, recompressed or slightly edited copies, so
+// near-duplicates are pairs at a small Hamming distance.
+final class PerceptualHash {
+    // Side of the grey square the DCT runs over
+    static final int DCT_SIZE = 32;
+    private static final int LOW_FREQUENCIES = 8;
+    // Cosine basis of the first LOW_FREQUENCIES DCT-II rows, the only ones pHash keeps
+    private static final double[][] COSINES = new double[LOW_FREQUENCIES][DCT_SIZE];
+
+    static {
+        for (int u = 0; u < LOW_FREQUENCIES; u++) {
+            for (int x = 0; x < DCT_SIZE; x++) {
+                COSINES[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2.0 * DCT_SIZE));
+            }
+        }
+    }
+
+    private PerceptualHash() {}
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    // Decodes uri at the smallest power-of-two sample that still covers DCT_SIZE, so a
+    // 12MP photo costs a few kilobytes. Null when the file is missing or not an image.
+    @Nullable
+    static Bitmap decodeSmall(ContentResolver resolver, Uri uri) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return null;
+            BitmapFactory.decodeStream(in, null, options);
+        } catch (Exception e) {
+            return null;
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int sample = 1;
+        while (options.outWidth / (sample * 2) >= DCT_SIZE && options.outHeight / (sample * 2) >= DCT_SIZE) {
+            sample *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sample;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return null;
+            return BitmapFactory.decodeStream(in, null, options);
+        } catch (Exception | OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    // Each bit: is this pixel brighter than its right-hand neighbour, on a 9x8 grey thumbnail
+    static long dHash(Bitmap source) {
+        int[] grey = greyscale(source, 9, 8);
+        long hash = 0;
+        int bit = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                if (grey[y * 9 + x] > grey[y * 9 + x + 1]) {
+                    hash |= 1L << bit;
+                }
+                bit++;
+            }
+        }
+        return hash;
+    }
+
+    // Each bit: is this low-frequency DCT coefficient above the median of the AC ones
+    static long pHash(Bitmap source) {
+        int[] grey = greyscale(source, DCT_SIZE, DCT_SIZE);
+
+        // Separable DCT-II, computing only the LOW_FREQUENCIES x LOW_FREQUENCIES corner
+        double[][] rows = new double[DCT_SIZE][LOW_FREQUENCIES];
+        for (int y = 0; y < DCT_SIZE; y++) {
+            for (int u = 0; u < LOW_FREQUENCIES; u++) {
+                double sum = 0;
+                for (int x = 0; x < DCT_SIZE; x++) {
+                    sum += grey[y * DCT_SIZE + x] * COSINES[u][x];
+                }
+                rows[y][u] = sum;
+            }
+        }
+        double[] coefficients = new double[LOW_FREQUENCIES * LOW_FREQUENCIES];
+        for (int v = 0; v < LOW_FREQUENCIES; v++) {
+            for (int u = 0; u < LOW_FREQUENCIES; u++) {
+                double sum = 0;
+                for (int y = 0; y < DCT_SIZE; y++) {
+                    sum += rows[y][u] * COSINES[v][y];
+                }
+                coefficients[v * LOW_FREQUENCIES + u] = sum;
+            }
+        }
+
+        // The DC term is overall brightness and would skew the median
+        double[] ac = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+        Arrays.sort(ac);
+        double median = ac[ac.length / 2];
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] > median) {
+                hash |= 1L << i;
+            }
+        }
+        return hash;
+    }
+
+    // Luma (0-255) of source scaled to width x height with bilinear filtering
+    private static int[] greyscale(Bitmap source, int width, int height) {
+        Bitmap scaled = Bitmap.createScaledBitmap(source, width, height, true);
+        int[] pixels = new int[width * height];
+        scaled.getPixels(pixels, 0, width, 0, 0, width, height);
+        if (scaled != source) {
+            scaled.recycle();
+        }
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            pixels[i] = (299 * ((p >> 16) & 0xff) + 587 * ((p >> 8) & 0xff) + 114 * (p & 0xff)) / 1000;
+        }
+        return pixels;
+    }
+}
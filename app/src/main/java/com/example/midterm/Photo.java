@@ -2,9 +2,11 @@ package com.example.midterm;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity
+// One row per uri, enforced by the unique index
+@Entity(indices = {@Index(value = {"uri"}, unique = true)})
 public class Photo {
     @PrimaryKey(autoGenerate = true)
     public int id;
@@ -3,26 +3,59 @@ package com.example.midterm;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Dao
 public interface PhotoDao {
+    // Stays below SQLITE_MAX_VARIABLE_NUMBER (999 on older platform builds)
+    int MAX_QUERY_ARGS = 500;
+
     @Insert
-    void insert(Photo photo);
+    long insert(Photo photo);
+
+    // Lookup-or-insert as one transaction, so two loads of the same photo racing on the
+    // worker pool can't both insert; the unique uri index backs this up
+    @Transaction
+    default Photo getOrCreatePhoto(String uri) {
+        Photo photo = getPhotoByUri(uri);
+        if (photo == null) {
+            photo = new Photo(uri, 0, ""); // albumId 0 for "All Photos"
+            photo.id = (int) insert(photo);
+        }
+        return photo;
+    }
 
     @Query("SELECT * FROM Photo WHERE album_id = :albumId")
     List<Photo> getPhotosInAlbum(int albumId);
 
-    @Query("SELECT * FROM Photo WHERE tag LIKE '%' || :keyword || '%'")
-    List<Photo> searchByTag(String keyword);
+    // matchQuery is FTS4 syntax; build it with TagSearchEngine.buildMatchQuery
+    @Query("SELECT Photo.*, matchinfo(PhotoFts, 'pcnx') AS match_info FROM PhotoFts " +
+            "INNER JOIN Photo ON Photo.id = PhotoFts.rowid WHERE PhotoFts MATCH :matchQuery")
+    List<RankedPhoto> searchFts(String matchQuery);
 
     @Query("SELECT * FROM Photo WHERE uri = :uri")
     Photo getPhotoByUri(String uri);
 
-    @Query("UPDATE Photo SET tag = :tags WHERE id = :id")
-    void updatePhotoTags(int id, String tags);
+    // Callers must keep uris under SQLite's bound-parameter limit, see getTagsByUri
+    @Query("SELECT uri, tag FROM Photo WHERE uri IN (:uris) AND tag IS NOT NULL AND tag != ''")
+    List<UriTag> getTagsForUris(List<String> uris);
+
+    // Tag strings keyed by uri, fetched in chunked IN (...) queries served by the uri index
+    default Map<String, String> getTagsByUri(List<String> uris) {
+        Map<String, String> tagsByUri = new HashMap<>();
+        for (int start = 0; start < uris.size(); start += MAX_QUERY_ARGS) {
+            List<String> chunk = uris.subList(start, Math.min(uris.size(), start + MAX_QUERY_ARGS));
+            for (UriTag row : getTagsForUris(chunk)) {
+                tagsByUri.put(row.uri, row.tag);
+            }
+        }
+        return tagsByUri;
+    }
 
     @Update
     void update(Photo photo);
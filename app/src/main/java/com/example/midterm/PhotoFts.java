@@ -0,0 +1,22 @@
+package com.example.midterm;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+// External-content FTS4 index over Photo. Room installs triggers on Photo so the
+// index follows every insert/update/delete, including the Photo.tag refreshes that
+// PhotoTagDao makes inside its tag writes.
+// Add caption/file name columns here once Photo carries them.
+@Fts4(contentEntity = Photo.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "PhotoFts")
+public class PhotoFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    public int rowId;
+
+    @ColumnInfo(name = "tag")
+    public String tag;
+}
@@ -0,0 +1,41 @@
+package com.example.midterm;
+
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+// Perceptual hashes and visual features of one MediaStore image, keyed like MediaMetadata so every image has a
+// row whether or not it was ever tagged. Rows go with their MediaMetadata row when
+// GalleryIndex drops a deleted image, and a changed date_modified marks them for rehashing.
+@Entity(tableName = "PhotoHash",
+        foreignKeys = @ForeignKey(entity = MediaMetadata.class,
+                parentColumns = "media_id", childColumns = "media_id",
+                onDelete = ForeignKey.CASCADE))
+public class PhotoHash {
+    @PrimaryKey
+    @ColumnInfo(name = "media_id")
+    public long mediaId;
+
+    // MediaMetadata.date_modified of the file that was hashed
+    @ColumnInfo(name = "date_modified")
+    public long dateModified;
+
+    // 64-bit difference hash: horizontal gradient signs of a 9x8 grey thumbnail
+    @ColumnInfo(name = "dhash")
+    public long dHash;
+
+    // 64-bit DCT hash: low 8x8 frequencies of a 32x32 grey thumbnail against their median
+    @ColumnInfo(name = "phash")
+    public long pHash;
+
+    // VisualFeatures vector for "find similar"; null only for rows that failed to decode
+    @Nullable
+    @ColumnInfo(name = "features", typeAffinity = ColumnInfo.BLOB)
+    public byte[] features;
+
+    // False when the file could not be decoded; kept so it is not retried until it changes
+    @ColumnInfo(name = "decoded")
+    public boolean decoded;
+}
@@ -0,0 +1,54 @@
+package com.example.midterm;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import java.util.List;
+
+@Dao
+public interface PhotoHashDao {
+    // An image in the metadata mirror whose hash is missing or older than the file
+    class Pending {
+        @ColumnInfo(name = "media_id")
+        public long mediaId;
+
+        @ColumnInfo(name = "date_modified")
+        public long dateModified;
+
+        // Whether the stale row being replaced already counted as hashed
+        @ColumnInfo(name = "was_decoded")
+        public boolean wasDecoded;
+    }
+
+    // What SimilarityIndex loads: just the vectors, without the hashes
+    class Features {
+        @ColumnInfo(name = "media_id")
+        public long mediaId;
+
+        @ColumnInfo(name = "features")
+        public byte[] features;
+    }
+
+    @Upsert
+    void upsertAll(List<PhotoHash> rows);
+
+    // Work left for DuplicateIndex.hashPending. The table itself is the progress record:
+    // a pass stopped halfway resumes from whatever this still returns.
+    @Query("SELECT MediaMetadata.media_id, MediaMetadata.date_modified, " +
+            "COALESCE(PhotoHash.decoded, 0) AS was_decoded FROM MediaMetadata " +
+            "LEFT JOIN PhotoHash ON PhotoHash.media_id = MediaMetadata.media_id " +
+            "WHERE PhotoHash.media_id IS NULL OR PhotoHash.date_modified != MediaMetadata.date_modified " +
+            "ORDER BY MediaMetadata.media_id LIMIT :limit")
+    List<Pending> getPending(int limit);
+
+    @Query("SELECT COUNT(*) FROM PhotoHash WHERE decoded = 1")
+    int countHashed();
+
+    @Query("SELECT * FROM PhotoHash WHERE decoded = 1")
+    List<PhotoHash> getAllHashed();
+
+    @Query("SELECT media_id, features FROM PhotoHash WHERE features IS NOT NULL")
+    List<Features> getAllFeatures();
+}
@@ -0,0 +1,78 @@
+package com.example.midterm;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// One row per (photo, tag) pair. tag_key is the case-folded form used for lookups,
+// tag keeps the spelling the user typed for display.
+@Entity(tableName = "PhotoTag",
+        primaryKeys = {"photo_id", "tag_key"},
+        foreignKeys = @ForeignKey(entity = Photo.class,
+                parentColumns = "id",
+                childColumns = "photo_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"tag_key", "photo_id"})})
+public class PhotoTag {
+    @ColumnInfo(name = "photo_id")
+    public int photoId;
+
+    @NonNull
+    @ColumnInfo(name = "tag_key")
+    public String tagKey;
+
+    @NonNull
+    @ColumnInfo(name = "tag")
+    public String tag;
+
+    public PhotoTag(int photoId, @NonNull String tagKey, @NonNull String tag) {
+        this.photoId = photoId;
+        this.tagKey = tagKey;
+        this.tag = tag;
+    }
+
+    public static PhotoTag of(int photoId, String tag) {
+        String display = tag.trim();
+        return new PhotoTag(photoId, normalize(display), display);
+    }
+
+    // Trim, collapse inner whitespace and case-fold so "Beach " and "beach" share a key
+    public static String normalize(String tag) {
+        if (tag == null) return "";
+        return tag.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Splits a legacy comma-joined tag string, dropping blanks and case-insensitive duplicates
+    public static List<String> split(String tags) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        if (tags != null && !tags.isEmpty()) {
+            for (String tag : tags.split(",")) {
+                String trimmed = tag.trim();
+                if (!trimmed.isEmpty() && !unique.containsKey(normalize(trimmed))) {
+                    unique.put(normalize(trimmed), trimmed);
+                }
+            }
+        }
+        return new ArrayList<>(unique.values());
+    }
+
+    // Builds the comma-joined display string cached on Photo.tag
+    public static String join(List<String> tags) {
+        StringBuilder sb = new StringBuilder();
+        for (String tag : tags) {
+            if (sb.length() > 0) {
+                sb.append(",");
+            }
+            sb.append(tag);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.midterm;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.ColumnInfo;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Dao
+public abstract class PhotoTagDao {
+    // One distinct tag with the number of photos carrying it
+    public static class TagCount {
+        @ColumnInfo(name = "tag_key")
+        public String tagKey;
+
+        @ColumnInfo(name = "tag")
+        public String tag;
+
+        @ColumnInfo(name = "uses")
+        public int uses;
+    }
+
+    // One (tag, photo) pair, for TagBitmapIndex
+    public static class TagUri {
+        @ColumnInfo(name = "tag_key")
+        public String tagKey;
+
+        @ColumnInfo(name = "uri")
+        public String uri;
+    }
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract long insert(PhotoTag photoTag);
+
+    @Query("DELETE FROM PhotoTag WHERE photo_id = :photoId AND tag_key = :tagKey")
+    abstract int delete(int photoId, String tagKey);
+
+    @Query("SELECT tag FROM PhotoTag WHERE photo_id = :photoId ORDER BY rowid")
+    public abstract List<String> getTagsForPhoto(int photoId);
+
+    @Query("SELECT tag FROM PhotoTag WHERE photo_id = :photoId ORDER BY rowid")
+    public abstract LiveData<List<String>> observeTagsForPhoto(int photoId);
+
+    // Spelling per key is the alphabetically first one; keys are case-folded anyway
+    @Query("SELECT tag_key, MIN(tag) AS tag, COUNT(*) AS uses FROM PhotoTag GROUP BY tag_key")
+    public abstract List<TagCount> getTagCounts();
+
+    @Query("SELECT PhotoTag.tag_key, Photo.uri FROM PhotoTag INNER JOIN Photo ON Photo.id = PhotoTag.photo_id")
+    public abstract List<TagUri> getAllTagUris();
+
+    @Query("SELECT uri FROM Photo WHERE id = :photoId")
+    abstract String getPhotoUri(int photoId);
+
+    @Query("UPDATE Photo SET tag = :tags WHERE id = :photoId")
+    abstract void updateDisplayTags(int photoId, String tags);
+
+    // Returns false if the photo already carried this tag (compared case-insensitively).
+    // TagDictionary and TagBitmapIndex are told last, once nothing in the transaction can
+    // fail any more.
+    @Transaction
+    public boolean addTag(int photoId, String tag) {
+        PhotoTag row = PhotoTag.of(photoId, tag);
+        if (insert(row) == -1) {
+            return false;
+        }
+        refreshDisplayTags(photoId);
+        TagDictionary.recordAdded(row.tagKey, row.tag);
+        TagBitmapIndex.recordAdded(row.tagKey, getPhotoUri(photoId));
+        return true;
+    }
+
+    @Transaction
+    public boolean removeTag(int photoId, String tag) {
+        String tagKey = PhotoTag.normalize(tag);
+        if (delete(photoId, tagKey) == 0) {
+            return false;
+        }
+        refreshDisplayTags(photoId);
+        TagDictionary.recordRemoved(tagKey);
+        TagBitmapIndex.recordRemoved(tagKey, getPhotoUri(photoId));
+        return true;
+    }
+
+    // Photo.tag is kept as a denormalized display string; PhotoTag is the source of truth
+    private void refreshDisplayTags(int photoId) {
+        List<String> tags = new ArrayList<>(getTagsForPhoto(photoId));
+        updateDisplayTags(photoId, PhotoTag.join(tags));
+    }
+}
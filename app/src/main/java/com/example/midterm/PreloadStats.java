@@ -0,0 +1,67 @@
+package com.example.midterm;
+
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Counts where bound grid/list cells got their image from: memory means the preloader (or
+// an earlier bind) had it warm, disk means a cached thumbnail was re-decoded, source means a
+// full decode from the original. Logged every LOG_INTERVAL binds.
+public final class PreloadStats {
+    private static final String TAG = "PreloadStats";
+    private static final int LOG_INTERVAL = 500;
+
+    private static final AtomicInteger bound = new AtomicInteger();
+    private static final AtomicInteger memoryHits = new AtomicInteger();
+    private static final AtomicInteger diskHits = new AtomicInteger();
+    private static final AtomicInteger sourceDecodes = new AtomicInteger();
+
+    private PreloadStats() {}
+
+    // Attach to bind requests only; preload requests would count themselves
+    public static final RequestListener<Drawable> BIND_LISTENER = new RequestListener<Drawable>() {
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                    Target<Drawable> target, boolean isFirstResource) {
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                       DataSource dataSource, boolean isFirstResource) {
+            record(dataSource);
+            return false;
+        }
+    };
+
+    static void record(DataSource dataSource) {
+        if (dataSource == DataSource.MEMORY_CACHE) {
+            memoryHits.incrementAndGet();
+        } else if (dataSource == DataSource.RESOURCE_DISK_CACHE || dataSource == DataSource.DATA_DISK_CACHE) {
+            diskHits.incrementAndGet();
+        } else {
+            sourceDecodes.incrementAndGet();
+        }
+        if (bound.incrementAndGet() % LOG_INTERVAL == 0) {
+            Log.d(TAG, summary());
+        }
+    }
+
+    public static float warmRatio() {
+        int total = bound.get();
+        return total == 0 ? 0f : memoryHits.get() / (float) total;
+    }
+
+    public static String summary() {
+        return "bound=" + bound.get() + " memory=" + memoryHits.get() + " disk=" + diskHits.get()
+                + " source=" + sourceDecodes.get() + " warm=" + Math.round(warmRatio() * 100) + "%";
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.midterm;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Embedded;
+
+// Photo row plus the raw FTS matchinfo('pcnx') blob used for ranking
+public class RankedPhoto {
+    @Embedded
+    public Photo photo;
+
+    @ColumnInfo(name = "match_info")
+    public byte[] matchInfo;
+}
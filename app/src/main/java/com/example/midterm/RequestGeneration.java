@@ -0,0 +1,51 @@
+package com.example.midterm;
+
+import android.os.CancellationSignal;
+
+// Monotonic counter for "the load that is currently wanted". Every reload calls next(),
+// which cancels whatever the previous token still has queued or running, and results are
+// only applied while their token isCurrent(). Tokens double as TaskScheduler owners, and
+// carry a CancellationSignal for ContentResolver queries that are already executing.
+// next() and isCurrent() are called on the main thread; isCancelled() from any thread.
+public final class RequestGeneration {
+    private Token current = new Token(0);
+
+    public Token next() {
+        Token previous = current;
+        previous.cancel();
+        current = new Token(previous.value + 1);
+        return current;
+    }
+
+    public Token current() {
+        return current;
+    }
+
+    public final class Token {
+        final int value;
+        private final CancellationSignal cancellationSignal = new CancellationSignal();
+        private volatile boolean cancelled;
+
+        private Token(int value) {
+            this.value = value;
+        }
+
+        public boolean isCurrent() {
+            return this == current;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public CancellationSignal cancellationSignal() {
+            return cancellationSignal;
+        }
+
+        void cancel() {
+            cancelled = true;
+            TaskScheduler.cancelAll(this);
+            cancellationSignal.cancel();
+        }
+    }
+}
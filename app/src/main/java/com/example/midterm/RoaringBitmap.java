@@ -0,0 +1,454 @@
+package com.example.midterm;
+
+import java.util.Arrays;
+
+// Compressed set of non-negative ints in the style of Roaring bitmaps. Values are split by
+// their high 16 bits into chunks of 65536; each chunk is stored as whichever is smaller:
+//   - an ArrayContainer, a sorted char[] of the low bits, while it holds up to 4096 values
+//   - a BitmapContainer, 1024 longs (8KB) with one bit per value, beyond that
+// Set operations work chunk by chunk and container by container, so AND, OR and AND NOT
+// over tag sets cost time proportional to the compressed size rather than to the ids.
+//
+// Not thread-safe; TagBitmapIndex guards its instances. and/or/andNot return new bitmaps
+// and leave their inputs untouched.
+final class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+
+    // Sorted chunk keys (high 16 bits) with their containers
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    RoaringBitmap() {
+        this(4);
+    }
+
+    private RoaringBitmap(int capacity) {
+        keys = new char[capacity];
+        containers = new Container[capacity];
+    }
+
+    static RoaringBitmap of(long[] values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (long value : values) {
+            if (value >= 0 && value <= Integer.MAX_VALUE) {
+                bitmap.add((int) value);
+            }
+        }
+        return bitmap;
+    }
+
+    void add(int value) {
+        char high = (char) (value >>> 16);
+        int i = indexOf(high);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) value);
+            return;
+        }
+        i = -i - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = high;
+        containers[i] = new ArrayContainer().add((char) value);
+        size++;
+    }
+
+    void remove(int value) {
+        int i = indexOf((char) (value >>> 16));
+        if (i < 0) return;
+        Container container = containers[i].remove((char) value);
+        if (container.cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+            containers[--size] = null;
+        } else {
+            containers[i] = container;
+        }
+    }
+
+    boolean contains(int value) {
+        int i = indexOf((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, Math.min(size, other.size)));
+        int i = 0, j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, size + other.size));
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i >= size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap(Math.max(1, size));
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    // Members in ascending order
+    int[] toArray() {
+        int[] values = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n = containers[i].writeTo(keys[i] << 16, values, n);
+        }
+        return values;
+    }
+
+    // Appends a chunk with a key above every existing one; empty containers are dropped
+    private void append(char key, Container container) {
+        if (container.cardinality() == 0) return;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        keys[size] = key;
+        containers[size++] = container;
+    }
+
+    private int indexOf(char key) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) lo = mid + 1;
+            else if (keys[mid] > key) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    // Mutators return the container to keep, which may be a converted one
+    private abstract static class Container {
+        abstract int cardinality();
+        abstract boolean contains(char value);
+        abstract Container add(char value);
+        abstract Container remove(char value);
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract Container andNot(Container other);
+        abstract Container copy();
+        // Writes high | low for every member into out from offset, returns the next offset
+        abstract int writeTo(int high, int[] out, int offset);
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int count;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int count) {
+            this.values = values;
+            this.count = count;
+        }
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, count, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, count, value);
+            if (i >= 0) return this;
+            if (count == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (count == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, count * 2)));
+            }
+            System.arraycopy(values, i, values, i + 1, count - i);
+            values[i] = value;
+            count++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int i = Arrays.binarySearch(values, 0, count, value);
+            if (i < 0) return this;
+            System.arraycopy(values, i + 1, values, i, count - i - 1);
+            count--;
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[count];
+            int n = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                int i = 0, j = 0;
+                while (i < count && j < o.count) {
+                    if (values[i] < o.values[j]) i++;
+                    else if (values[i] > o.values[j]) j++;
+                    else {
+                        out[n++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    if (other.contains(values[i])) out[n++] = values[i];
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            if (count + o.count > ARRAY_MAX) {
+                return toBitmap().or(o);
+            }
+            char[] out = new char[count + o.count];
+            int i = 0, j = 0, n = 0;
+            while (i < count || j < o.count) {
+                if (j >= o.count || (i < count && values[i] < o.values[j])) {
+                    out[n++] = values[i++];
+                } else if (i >= count || values[i] > o.values[j]) {
+                    out[n++] = o.values[j++];
+                } else {
+                    out[n++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (!other.contains(values[i])) out[n++] = values[i];
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, count)), count);
+        }
+
+        @Override
+        int writeTo(int high, int[] out, int offset) {
+            for (int i = 0; i < count; i++) {
+                out[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < count; i++) {
+                bitmap.set(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words;
+        int count;
+
+        BitmapContainer() {
+            this(new long[1024], 0);
+        }
+
+        BitmapContainer(long[] words, int count) {
+            this.words = words;
+            this.count = count;
+        }
+
+        void set(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before | (1L << value);
+            if (before != words[value >>> 6]) count++;
+        }
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] = before & ~(1L << value);
+            if (before != words[value >>> 6]) count--;
+            return count <= ARRAY_MAX ? toArrayContainer() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] o = ((BitmapContainer) other).words;
+            long[] out = new long[1024];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] = words[i] & o[i];
+                n += Long.bitCount(out[i]);
+            }
+            return shrink(new BitmapContainer(out, n));
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] out = words.clone();
+            BitmapContainer result = new BitmapContainer(out, count);
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                for (int i = 0; i < o.count; i++) {
+                    result.set(o.values[i]);
+                }
+                return result;
+            }
+            long[] o = ((BitmapContainer) other).words;
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                out[i] |= o[i];
+                n += Long.bitCount(out[i]);
+            }
+            result.count = n;
+            return result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] out = words.clone();
+            int n;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer o = (ArrayContainer) other;
+                n = count;
+                for (int i = 0; i < o.count; i++) {
+                    char value = o.values[i];
+                    if ((out[value >>> 6] & (1L << value)) != 0) {
+                        out[value >>> 6] &= ~(1L << value);
+                        n--;
+                    }
+                }
+            } else {
+                long[] o = ((BitmapContainer) other).words;
+                n = 0;
+                for (int i = 0; i < 1024; i++) {
+                    out[i] &= ~o[i];
+                    n += Long.bitCount(out[i]);
+                }
+            }
+            return shrink(new BitmapContainer(out, n));
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), count);
+        }
+
+        @Override
+        int writeTo(int high, int[] out, int offset) {
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    out[offset++] = high | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        private static Container shrink(BitmapContainer bitmap) {
+            return bitmap.count <= ARRAY_MAX ? bitmap.toArrayContainer() : bitmap;
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] values = new char[Math.max(1, count)];
+            int n = 0;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.midterm;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.MediaStore;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+// Describes a set of photos handed from one screen to another: which query produced
+// it (whole gallery, an album, a tag search) and, when the sender already has them,
+// the MediaStore ids as a primitive array. Only the descriptor is ever written to a
+// Bundle; the ids stay in SelectionRegistry and are re-derived from the query after
+// process death.
+public final class Selection {
+    public static final int KIND_GALLERY = 0;
+    public static final int KIND_ALBUM = 1;
+    public static final int KIND_SEARCH = 2;
+    public static final int KIND_IDS = 3;
+
+    // Order of the gallery and album-less queries. DATE_ADDED DESC (ties by _ID DESC), the
+    // order of GalleryIndex and SlideSource, is the only one so far; it is saved with the
+    // rest of the descriptor so a restored selection can tell which order it was built in.
+    public static final int SORT_DATE_ADDED_DESC = 0;
+
+    // Ids arrays up to this size are small enough to write into the saved state as-is
+    static final int MAX_BUNDLED_IDS = 1000;
+
+    private static final String KEY_KIND = "selection.kind";
+    private static final String KEY_ALBUM_ID = "selection.albumId";
+    private static final String KEY_QUERY = "selection.query";
+    private static final String KEY_IDS = "selection.ids";
+    private static final String KEY_SORT = "selection.sort";
+
+    public final int kind;
+    public final int albumId;
+    @Nullable public final String query;
+    // Materialized MediaStore ids in display order, or null when the query has to be re-run
+    @Nullable public final long[] ids;
+    public final int sort;
+
+    private Selection(int kind, int albumId, @Nullable String query, @Nullable long[] ids, int sort) {
+        this.kind = kind;
+        this.albumId = albumId;
+        this.query = query;
+        this.ids = ids;
+        this.sort = sort;
+    }
+
+    public static Selection gallery() {
+        return new Selection(KIND_GALLERY, -1, null, null, SORT_DATE_ADDED_DESC);
+    }
+
+    // The gallery as the sender shows it right now. The ids are only an in-memory fast
+    // path: they are never bundled, and a restored selection pages through GalleryIndex.
+    public static Selection gallery(long[] ids) {
+        return new Selection(KIND_GALLERY, -1, null, ids, SORT_DATE_ADDED_DESC);
+    }
+
+    public static Selection album(int albumId) {
+        return new Selection(KIND_ALBUM, albumId, null, null, SORT_DATE_ADDED_DESC);
+    }
+
+    // ids may be null if the results were not all MediaStore images
+    public static Selection search(String query, @Nullable long[] ids) {
+        return new Selection(KIND_SEARCH, -1, query, ids, SORT_DATE_ADDED_DESC);
+    }
+
+    public static Selection ofIds(long[] ids) {
+        return new Selection(KIND_IDS, -1, null, ids, SORT_DATE_ADDED_DESC);
+    }
+
+    // MediaStore ids for uris, or null if any of them is not a MediaStore image
+    @Nullable
+    public static long[] idsOf(List<Uri> uris) {
+        long[] ids = new long[uris.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = MediaMetadata.mediaIdOf(uris.get(i));
+            if (ids[i] == -1) return null;
+        }
+        return ids;
+    }
+
+    public static Uri uriOf(long mediaId) {
+        return ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, mediaId);
+    }
+
+    // Number of photos if known without a query, otherwise -1
+    public int knownSize() {
+        return ids != null ? ids.length : -1;
+    }
+
+    public SlideSource openSlideSource(Context context) {
+        switch (kind) {
+            case KIND_ALBUM:
+                return SlideSource.album(context, albumId);
+            case KIND_SEARCH:
+                return ids != null ? SlideSource.ofIds(ids) : SlideSource.search(context, query);
+            case KIND_IDS:
+                return SlideSource.ofIds(ids != null ? ids : new long[0]);
+            case KIND_GALLERY:
+            default:
+                return ids != null ? SlideSource.ofIds(ids) : SlideSource.gallery(context);
+        }
+    }
+
+    void writeTo(Bundle bundle) {
+        bundle.putInt(KEY_KIND, kind);
+        bundle.putInt(KEY_ALBUM_ID, albumId);
+        bundle.putString(KEY_QUERY, query);
+        bundle.putInt(KEY_SORT, sort);
+        // Searches can be re-run; a bare id list can only be restored if it was saved
+        if (kind == KIND_IDS && ids != null && ids.length <= MAX_BUNDLED_IDS) {
+            bundle.putLongArray(KEY_IDS, ids);
+        }
+    }
+
+    @Nullable
+    static Selection readFrom(@Nullable Bundle bundle) {
+        if (bundle == null || !bundle.containsKey(KEY_KIND)) return null;
+        return new Selection(bundle.getInt(KEY_KIND),
+                bundle.getInt(KEY_ALBUM_ID, -1),
+                bundle.getString(KEY_QUERY),
+                bundle.getLongArray(KEY_IDS),
+                bundle.getInt(KEY_SORT, SORT_DATE_ADDED_DESC));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.midterm;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// In-process handoff of selections between activities. The sender registers a
+// Selection and puts only a token plus the small query descriptor in the Intent;
+// the receiver gets the same object back, id array included, without anything
+// being serialized. If the process died in between, the token misses and the
+// Selection is rebuilt from the descriptor, which re-runs its query.
+public final class SelectionRegistry {
+    private static final String EXTRA_TOKEN = "selection.token";
+    // Recent handoffs kept alive; older entries fall back to their descriptor
+    private static final int MAX_ENTRIES = 8;
+
+    private static final Map<String, Selection> selections =
+            new LinkedHashMap<String, Selection>(MAX_ENTRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Selection> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private SelectionRegistry() {}
+
+    public static void putInto(Intent intent, Selection selection) {
+        String token = UUID.randomUUID().toString();
+        synchronized (selections) {
+            selections.put(token, selection);
+        }
+        Bundle extras = new Bundle();
+        extras.putString(EXTRA_TOKEN, token);
+        selection.writeTo(extras);
+        intent.putExtras(extras);
+    }
+
+    @Nullable
+    public static Selection from(Intent intent) {
+        Bundle extras = intent.getExtras();
+        if (extras == null) return null;
+        String token = extras.getString(EXTRA_TOKEN);
+        if (token != null) {
+            synchronized (selections) {
+                Selection selection = selections.get(token);
+                if (selection != null) return selection;
+            }
+        }
+        return Selection.readFrom(extras);
+    }
+}
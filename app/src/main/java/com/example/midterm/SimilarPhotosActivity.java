@@ -0,0 +1,62 @@
+package com.example.midterm;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The photo the user asked about, followed by the library ranked by visual similarity to it
+public class SimilarPhotosActivity extends AppCompatActivity {
+    public static final String EXTRA_MEDIA_ID = "mediaId";
+    private static final int RESULT_COUNT = 60;
+
+    private TextView textStatus;
+    private ImageAdapter imageAdapter;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_similar_photos);
+
+        textStatus = findViewById(R.id.textSimilarStatus);
+        RecyclerView recyclerView = findViewById(R.id.recyclerViewSimilar);
+        recyclerView.setLayoutManager(new GridLayoutManager(this, 3));
+        imageAdapter = new ImageAdapter(this, new ArrayList<>());
+        recyclerView.setAdapter(imageAdapter);
+
+        long mediaId = getIntent().getLongExtra(EXTRA_MEDIA_ID, -1);
+        textStatus.setText("Comparing…");
+        SimilarityIndex similarityIndex = SimilarityIndex.get(this);
+        TaskScheduler.execute(TaskScheduler.Lane.UI, this, () -> {
+            long[] similar = similarityIndex.findSimilar(mediaId, RESULT_COUNT);
+            runOnUiThread(() -> {
+                if (isDestroyed()) return;
+                if (similar == null) {
+                    textStatus.setText("This photo hasn't been analysed yet. Try again shortly.");
+                    return;
+                }
+                long[] ids = new long[similar.length + 1];
+                ids[0] = mediaId;
+                System.arraycopy(similar, 0, ids, 1, similar.length);
+                List<Uri> uris = new ArrayList<>(ids.length);
+                for (long id : ids) {
+                    uris.add(Selection.uriOf(id));
+                }
+                imageAdapter.updateData(uris, Selection.ofIds(ids));
+                textStatus.setText(similar.length + " closest matches");
+            });
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        TaskScheduler.cancelAll(this);
+    }
+}
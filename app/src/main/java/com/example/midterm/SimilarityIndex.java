@@ -0,0 +1,221 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// "More like this": ranks the library by VisualFeatures distance to one photo.
+//
+// The vectors stored in PhotoHash are loaded once into a packed byte array and arranged as
+// a vantage-point tree: each node splits the rest of its range by the median distance to a
+// vantage vector, and a k-nearest search skips any side the triangle inequality rules out.
+// Nothing is decoded at query time. The tree is built in the background when the index is
+// first used and rebuilt there after every hashing pass that wrote rows; queries keep using
+// the previous tree until the new one is swapped in.
+public class SimilarityIndex {
+    private static final String TAG = "SimilarityIndex";
+
+    private static SimilarityIndex instance;
+
+    private final PhotoHashDao hashDao;
+    private final DuplicateIndex duplicateIndex;
+    // Replaced whole by each build; queries read whichever tree was current when they started
+    private volatile Tree tree;
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private SimilarityIndex(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.hashDao = AppDatabase.getDatabase(appContext).photoHashDao();
+        this.duplicateIndex = DuplicateIndex.get(appContext);
+        duplicateIndex.addListener((hashed, finished, changed) -> {
+            // A pass that hashed nothing, as after most gallery syncs, leaves the vectors as they were
+            if (finished && changed) scheduleRebuild();
+        });
+        scheduleRebuild();
+    }
+
+    public static synchronized SimilarityIndex get(Context context) {
+        if (instance == null) {
+            instance = new SimilarityIndex(context);
+        }
+        return instance;
+    }
+
+    // The k photos closest to mediaId, nearest first, without mediaId itself. Null when
+    // mediaId has no features yet (not hashed, or not a MediaStore image). Worker thread.
+    @Nullable
+    public long[] findSimilar(long mediaId, int k) {
+        Tree current = tree;
+        if (current == null) {
+            // Asked before the first build finished; waits for it rather than building twice
+            current = currentOrBuild();
+        }
+        Integer query = current.indexOf(mediaId);
+        if (query == null) return null;
+
+        long start = System.nanoTime();
+        long[] result = current.nearest(query, k);
+        Log.d(TAG, "Top " + k + " of " + current.ids.length + " in "
+                + (System.nanoTime() - start) / 1000 + " us");
+        return result;
+    }
+
+    private void scheduleRebuild() {
+        if (!rebuildScheduled.compareAndSet(false, true)) return;
+        TaskScheduler.execute(TaskScheduler.Lane.BACKGROUND, () -> {
+            rebuildScheduled.set(false);
+            rebuild();
+        });
+    }
+
+    private synchronized Tree currentOrBuild() {
+        return tree != null ? tree : rebuild();
+    }
+
+    private synchronized Tree rebuild() {
+        tree = Tree.build(hashDao.getAllFeatures());
+        return tree;
+    }
+
+    private static final class Tree {
+        final long[] ids;
+        // ids.length vectors of VisualFeatures.LENGTH bytes, in tree order
+        final byte[] vectors;
+        // Node i is the vantage point at tree position i; its inner side holds the points
+        // within radius[i], laid out at [i + 1, split[i]), the outer side at [split[i], end)
+        final int[] radius;
+        final int[] split;
+        final int[] end;
+        private final HashMap<Long, Integer> positions;
+
+        private Tree(int n) {
+            ids = new long[n];
+            vectors = new byte[n * VisualFeatures.LENGTH];
+            radius = new int[n];
+            split = new int[n];
+            end = new int[n];
+            positions = new HashMap<>(n * 2);
+        }
+
+        static Tree build(List<PhotoHashDao.Features> rows) {
+            long start = System.nanoTime();
+            int n = rows.size();
+            // Build over an index permutation, then copy vectors into tree order
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            byte[] source = new byte[n * VisualFeatures.LENGTH];
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(rows.get(i).features, 0, source, i * VisualFeatures.LENGTH, VisualFeatures.LENGTH);
+            }
+
+            Tree tree = new Tree(n);
+            int[] distances = new int[n];
+            arrange(source, order, 0, n, tree, distances, new Random(n));
+            for (int i = 0; i < n; i++) {
+                tree.ids[i] = rows.get(order[i]).mediaId;
+                tree.positions.put(tree.ids[i], i);
+                System.arraycopy(source, order[i] * VisualFeatures.LENGTH,
+                        tree.vectors, i * VisualFeatures.LENGTH, VisualFeatures.LENGTH);
+            }
+            Log.d(TAG, "Built VP-tree over " + n + " photos in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return tree;
+        }
+
+        // Makes order[from] the vantage point of [from, to) and partitions the rest around
+        // the median distance to it; recursion depth is about log2(n)
+        private static void arrange(byte[] source, int[] order, int from, int to,
+                                    Tree tree, int[] distances, Random random) {
+            if (from >= to) return;
+            tree.end[from] = to;
+            if (to - from == 1) {
+                tree.split[from] = to;
+                return;
+            }
+            swap(order, from, from + random.nextInt(to - from));
+            int vantage = order[from];
+            for (int i = from + 1; i < to; i++) {
+                distances[order[i]] = VisualFeatures.distance(source, vantage, order[i]);
+            }
+            int median = (from + 1 + to) / 2;
+            select(order, distances, from + 1, to - 1, median);
+            tree.radius[from] = distances[order[median]];
+            tree.split[from] = median;
+            arrange(source, order, from + 1, median, tree, distances, random);
+            arrange(source, order, median, to, tree, distances, random);
+        }
+
+        // Quickselect on order[lo..hi] by distance so order[k] is in its sorted place
+        private static void select(int[] order, int[] distances, int lo, int hi, int k) {
+            while (lo < hi) {
+                int pivot = distances[order[(lo + hi) >>> 1]];
+                int i = lo, j = hi;
+                while (i <= j) {
+                    while (distances[order[i]] < pivot) i++;
+                    while (distances[order[j]] > pivot) j--;
+                    if (i <= j) swap(order, i++, j--);
+                }
+                if (k <= j) hi = j;
+                else if (k >= i) lo = i;
+                else return;
+            }
+        }
+
+        private static void swap(int[] a, int i, int j) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+
+        @Nullable
+        Integer indexOf(long mediaId) {
+            return positions.get(mediaId);
+        }
+
+        // k nearest to the vector at tree position query, excluding it, nearest first
+        long[] nearest(int query, int k) {
+            // Max-heap of {distance, position}; its head is the current k-th best
+            PriorityQueue<int[]> best = new PriorityQueue<>(k + 1, (a, b) -> Integer.compare(b[0], a[0]));
+            if (ids.length > 0) search(0, query, k, best);
+            long[] result = new long[best.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = ids[best.poll()[1]];
+            }
+            return result;
+        }
+
+        private void search(int node, int query, int k, PriorityQueue<int[]> best) {
+            int d = VisualFeatures.distance(vectors, node, query);
+            if (node != query) {
+                if (best.size() < k) {
+                    best.add(new int[]{d, node});
+                } else if (d < best.peek()[0]) {
+                    best.poll();
+                    best.add(new int[]{d, node});
+                }
+            }
+            int innerFrom = node + 1;
+            int outerFrom = split[node];
+            int outerTo = end[node];
+            // Visit the side the query falls in first, so the bound tightens early
+            if (d < radius[node]) {
+                if (innerFrom < outerFrom) search(innerFrom, query, k, best);
+                if (outerFrom < outerTo && (best.size() < k || d + best.peek()[0] >= radius[node])) {
+                    search(outerFrom, query, k, best);
+                }
+            } else {
+                if (outerFrom < outerTo) search(outerFrom, query, k, best);
+                if (innerFrom < outerFrom && (best.size() < k || d - best.peek()[0] <= radius[node])) {
+                    search(innerFrom, query, k, best);
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.midterm;
 
 import android.media.MediaPlayer;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -14,16 +13,15 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.bumptech.glide.Glide;
-
-import java.util.ArrayList;
-import java.util.List;
 
 public class SlideShowActivity extends AppCompatActivity {
+    // Slides decoded ahead of the one on screen
+    private static final int PRELOAD_AHEAD = 2;
+
     private ImageView imageView;
     private TextView tvCounter;
 
-    private List<Uri> slideShowUris;
+    private SlideSource slideSource;
     private int currentPosition = 0;
     private Handler slideshowHandler;
     private MediaPlayer mediaPlayer;
@@ -39,17 +37,17 @@ public class SlideShowActivity extends AppCompatActivity {
                 if (!isPlaying || isFinishing() || isDestroyed()) {
                     return;
                 }
-                if (slideShowUris == null || slideShowUris.isEmpty()) {
+                if (slideSource == null || slideSource.size() == 0) {
                     stopSlideshow();
                     return;
                 }
-                if (currentPosition < slideShowUris.size() - 1) {
+                if (currentPosition < slideSource.size() - 1) {
                     currentPosition++;
                     showSlide(currentPosition);
                     if (slideshowHandler != null) {
                         slideshowHandler.postDelayed(this, slideDuration);
                     }
-                } else if (currentPosition == slideShowUris.size() - 1) {
+                } else if (currentPosition == slideSource.size() - 1) {
                     // End of slideshow - restart from beginning
                     currentPosition = 0;
                     showSlide(currentPosition);
@@ -74,9 +72,6 @@ public class SlideShowActivity extends AppCompatActivity {
 
         initializeViews();
         loadSlideshowData();
-
-        // Auto-start the slideshow and music
-        startSlideshow();
         startBackgroundMusic();
     }
 
@@ -88,31 +83,23 @@ public class SlideShowActivity extends AppCompatActivity {
 
     private void loadSlideshowData() {
         try {
-            // Get URIs from intent
-            ArrayList<String> uriStrings = getIntent().getStringArrayListExtra("slideUris");
-            slideShowUris = new ArrayList<>();
-
-            if (uriStrings != null && !uriStrings.isEmpty()) {
-                for (String uriString : uriStrings) {
-                    try {
-                        if (uriString != null && !uriString.isEmpty()) {
-                            Uri uri = Uri.parse(uriString);
-                            slideShowUris.add(uri);
-                        }
-                    } catch (Exception e) {
-                        Log.e("SlideshowActivity", "Error parsing URI: " + uriString, e);
-                    }
-                }
-            }
-
-            if (slideShowUris.isEmpty()) {
+            slideSource = createSlideSource();
+            if (slideSource == null) {
                 Toast.makeText(this, "No valid images for slideshow", Toast.LENGTH_LONG).show();
                 finish();
                 return;
             }
 
-            // Show first image
-            showSlide(currentPosition);
+            slideSource.open(() -> {
+                if (slideSource.size() == 0) {
+                    Toast.makeText(this, "No valid images for slideshow", Toast.LENGTH_LONG).show();
+                    finish();
+                    return;
+                }
+                // Show first image, then auto-start the slideshow
+                showSlide(currentPosition);
+                startSlideshow();
+            });
 
         } catch (Exception e) {
             Log.e("SlideshowActivity", "Error loading slideshow data: " + e.getMessage(), e);
@@ -121,20 +108,45 @@ public class SlideShowActivity extends AppCompatActivity {
         }
     }
 
+    private SlideSource createSlideSource() {
+        Selection selection = SelectionRegistry.from(getIntent());
+        return selection != null ? selection.openSlideSource(this) : null;
+    }
+
     private void showSlide(int position) {
         if (isFinishing() || isDestroyed()) return;
-        if (position >= 0 && slideShowUris != null && position < slideShowUris.size() && imageView != null) {
+        if (slideSource == null || imageView == null || position < 0 || position >= slideSource.size()) return;
+
+        if (tvCounter != null) {
+            tvCounter.setText((position + 1) + " / " + slideSource.size());
+        }
+        slideSource.get(position, uri -> {
+            // The user may have skipped ahead while the page was being read
+            if (uri == null || position != currentPosition || isFinishing() || isDestroyed()) return;
             try {
-                Glide.with(this)
-                        .load(slideShowUris.get(position))
+                ImageRequests.slide(this, uri)
                         .into(imageView);
-
-                if (tvCounter != null) {
-                    tvCounter.setText((position + 1) + " / " + slideShowUris.size());
-                }
             } catch (Throwable t) {
                 Log.e("SlideshowActivity", "Error showing slide at position " + position, t);
             }
+            preloadAfter(position);
+        });
+    }
+
+    // Decode the next slides at the view's size so advancing is served from memory
+    private void preloadAfter(int position) {
+        int width = imageView.getWidth();
+        int height = imageView.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        int size = slideSource.size();
+        for (int i = 1; i <= PRELOAD_AHEAD && size > 1; i++) {
+            int next = (position + i) % size;
+            if (next == position) break;
+            slideSource.get(next, uri -> {
+                if (uri == null || isFinishing() || isDestroyed()) return;
+                ImageRequests.slide(this, uri).preload(width, height);
+            });
         }
     }
 
@@ -215,8 +227,8 @@ public class SlideShowActivity extends AppCompatActivity {
     }
 
     public void onNextClick(View view) {
-        if (slideShowUris == null) return;
-        if (currentPosition < slideShowUris.size() - 1) {
+        if (slideSource == null) return;
+        if (currentPosition < slideSource.size() - 1) {
             currentPosition++;
             showSlide(currentPosition);
             if (isPlaying) {
@@ -234,7 +246,7 @@ public class SlideShowActivity extends AppCompatActivity {
     }
 
     private void startSlideshow() {
-        if (slideShowUris == null || slideShowUris.isEmpty()) {
+        if (slideSource == null || slideSource.size() == 0) {
             Toast.makeText(this, "No images to play", Toast.LENGTH_SHORT).show();
             return;
         }
@@ -293,5 +305,8 @@ public class SlideShowActivity extends AppCompatActivity {
         if (slideshowHandler != null) {
             slideshowHandler.removeCallbacks(slideshowRunnable);
         }
+        if (slideSource != null) {
+            slideSource.release();
+        }
     }
 }
\ No newline at end of file
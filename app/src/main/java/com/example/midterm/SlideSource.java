@@ -0,0 +1,336 @@
+package com.example.midterm;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Lazily evaluated sequence of photos for the slideshow and full-screen pager. Only the count is
+// resolved up front; uris are read a page at a time around the slide being shown and
+// at most CACHED_PAGES pages are kept, so memory is the same for 50 or 50,000 slides.
+public abstract class SlideSource {
+    private static final String TAG = "SlideSource";
+    static final int PAGE_SIZE = 50;
+    private static final int CACHED_PAGES = 3;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Integer, List<Uri>> pages = new LruCache<>(CACHED_PAGES);
+    // Callbacks waiting for a page that is being read, keyed by page
+    private final Map<Integer, List<Runnable>> pendingPages = new HashMap<>();
+    private int size = -1;
+    private boolean released = false;
+
+    // Background thread: total number of slides
+    protected abstract int loadCount();
+
+    // Background thread: uris for [offset, offset + limit)
+    protected abstract List<Uri> loadPage(int offset, int limit);
+
+    // Resolves the slide count, then calls onReady on the main thread
+    public void open(Runnable onReady) {
+        TaskScheduler.execute(TaskScheduler.Lane.UI, this, () -> {
+            int count;
+            try {
+                count = loadCount();
+            } catch (Exception e) {
+                Log.e(TAG, "Error counting slides", e);
+                count = 0;
+            }
+            int finalCount = count;
+            mainHandler.post(() -> {
+                if (released) return;
+                size = finalCount;
+                onReady.run();
+            });
+        });
+    }
+
+    // Main thread; 0 until open() has completed
+    public int size() {
+        return Math.max(size, 0);
+    }
+
+    // Main thread; the uri if its page is cached, otherwise null
+    @Nullable
+    public Uri peek(int position) {
+        List<Uri> page = pages.get(position / PAGE_SIZE);
+        int index = position % PAGE_SIZE;
+        return page != null && index < page.size() ? page.get(index) : null;
+    }
+
+    // Main thread; delivers the uri at position (or null if it no longer exists) on the main thread
+    public void get(int position, Consumer<Uri> callback) {
+        if (position < 0 || position >= size()) {
+            callback.accept(null);
+            return;
+        }
+        int pageIndex = position / PAGE_SIZE;
+        if (pages.get(pageIndex) != null) {
+            callback.accept(peek(position));
+            return;
+        }
+
+        List<Runnable> waiting = pendingPages.get(pageIndex);
+        boolean alreadyLoading = waiting != null;
+        if (!alreadyLoading) {
+            waiting = new ArrayList<>();
+            pendingPages.put(pageIndex, waiting);
+        }
+        waiting.add(() -> callback.accept(peek(position)));
+        if (alreadyLoading) return;
+
+        TaskScheduler.execute(TaskScheduler.Lane.UI, this, () -> {
+            List<Uri> page;
+            try {
+                page = loadPage(pageIndex * PAGE_SIZE, PAGE_SIZE);
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading slide page " + pageIndex, e);
+                page = new ArrayList<>();
+            }
+            List<Uri> finalPage = page;
+            mainHandler.post(() -> {
+                if (released) return;
+                pages.put(pageIndex, finalPage);
+                List<Runnable> callbacks = pendingPages.remove(pageIndex);
+                if (callbacks != null) {
+                    for (Runnable r : callbacks) {
+                        r.run();
+                    }
+                }
+            });
+        });
+    }
+
+    public void release() {
+        released = true;
+        TaskScheduler.cancelAll(this);
+        pendingPages.clear();
+        pages.evictAll();
+    }
+
+    // Whole gallery, newest first. Served from GalleryIndex when it is ready, otherwise
+    // straight from MediaStore with LIMIT/OFFSET pages.
+    public static SlideSource gallery(Context context) {
+        return new GallerySource(context.getApplicationContext());
+    }
+
+    // Album membership in the order photos were added
+    public static SlideSource album(Context context, int albumId) {
+        return new AlbumSource(AppDatabase.getDatabase(context).albumDao(), albumId);
+    }
+
+    // Selections whose ids were materialized by the sender
+    public static SlideSource ofIds(long[] ids) {
+        return new IdsSource(ids);
+    }
+
+    // Small, already materialized selections (e.g. a single photo)
+    public static SlideSource ofUris(List<Uri> uris) {
+        return new ListSource(uris);
+    }
+
+    // Tag search re-run on open, e.g. after process death dropped the sender's ids
+    public static SlideSource search(Context context, String query) {
+        if (TagQuery.isBoolean(query)) {
+            return new BooleanSearchSource(TagBitmapIndex.get(context), query);
+        }
+        return new SearchSource(AppDatabase.getDatabase(context).photoDao(), query);
+    }
+
+    private static class GallerySource extends SlideSource {
+        private final Context context;
+        // Captured at open so positions stay stable while the show runs
+        private GallerySnapshot snapshot;
+
+        GallerySource(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        protected int loadCount() {
+            snapshot = GalleryIndex.get(context).getSnapshot();
+            if (snapshot != null) {
+                return snapshot.size();
+            }
+            try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Images.Media._ID}, null, null, null)) {
+                return cursor != null ? cursor.getCount() : 0;
+            }
+        }
+
+        @Override
+        protected List<Uri> loadPage(int offset, int limit) {
+            List<Uri> uris = new ArrayList<>();
+            if (snapshot != null) {
+                for (int i = offset; i < Math.min(snapshot.size(), offset + limit); i++) {
+                    uris.add(snapshot.get(i));
+                }
+                return uris;
+            }
+
+            try (Cursor cursor = queryPage(offset, limit)) {
+                if (cursor != null) {
+                    while (cursor.moveToNext()) {
+                        uris.add(ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, cursor.getLong(0)));
+                    }
+                }
+            }
+            return uris;
+        }
+
+        // MediaProvider only honors QUERY_ARG_LIMIT and QUERY_ARG_OFFSET from API 30; before
+        // that they are ignored and every page would be the whole gallery from the start, so
+        // the clause rides on the sort order there, which MediaProvider passes to SQLite as-is
+        @Nullable
+        private Cursor queryPage(int offset, int limit) {
+            String[] projection = {MediaStore.Images.Media._ID};
+            String sortOrder = MediaStore.Images.Media.DATE_ADDED + " DESC, " + MediaStore.Images.Media._ID + " DESC";
+            ContentResolver resolver = context.getContentResolver();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                Bundle queryArgs = new Bundle();
+                queryArgs.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, sortOrder);
+                queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+                queryArgs.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+                return resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, projection, queryArgs, null);
+            }
+            return resolver.query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, projection, null, null,
+                    sortOrder + " LIMIT " + limit + " OFFSET " + offset);
+        }
+    }
+
+    private static class AlbumSource extends SlideSource {
+        private final AlbumDao albumDao;
+        private final int albumId;
+
+        AlbumSource(AlbumDao albumDao, int albumId) {
+            this.albumDao = albumDao;
+            this.albumId = albumId;
+        }
+
+        @Override
+        protected int loadCount() {
+            return albumDao.countPhotos(albumId);
+        }
+
+        @Override
+        protected List<Uri> loadPage(int offset, int limit) {
+            List<Uri> uris = new ArrayList<>();
+            for (String uri : albumDao.getPhotoUrisPage(albumId, limit, offset)) {
+                uris.add(Uri.parse(uri));
+            }
+            return uris;
+        }
+    }
+
+    private static class IdsSource extends SlideSource {
+        private final long[] ids;
+
+        IdsSource(long[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        protected int loadCount() {
+            return ids.length;
+        }
+
+        @Override
+        protected List<Uri> loadPage(int offset, int limit) {
+            List<Uri> uris = new ArrayList<>();
+            for (int i = offset; i < Math.min(ids.length, offset + limit); i++) {
+                uris.add(Selection.uriOf(ids[i]));
+            }
+            return uris;
+        }
+    }
+
+    private static class SearchSource extends SlideSource {
+        private final PhotoDao photoDao;
+        private final String query;
+        private List<Photo> results;
+
+        SearchSource(PhotoDao photoDao, String query) {
+            this.photoDao = photoDao;
+            this.query = query;
+        }
+
+        @Override
+        protected int loadCount() {
+            results = new TagSearchEngine(photoDao).search(query);
+            return results.size();
+        }
+
+        @Override
+        protected List<Uri> loadPage(int offset, int limit) {
+            List<Uri> uris = new ArrayList<>();
+            for (int i = offset; i < Math.min(results.size(), offset + limit); i++) {
+                uris.add(Uri.parse(results.get(i).uri));
+            }
+            return uris;
+        }
+    }
+
+    private static class BooleanSearchSource extends SlideSource {
+        private final TagBitmapIndex index;
+        private final String query;
+        private long[] ids;
+
+        BooleanSearchSource(TagBitmapIndex index, String query) {
+            this.index = index;
+            this.query = query;
+        }
+
+        @Override
+        protected int loadCount() {
+            try {
+                ids = index.search(query);
+            } catch (IllegalArgumentException e) {
+                ids = new long[0];
+            }
+            return ids.length;
+        }
+
+        @Override
+        protected List<Uri> loadPage(int offset, int limit) {
+            List<Uri> uris = new ArrayList<>();
+            for (int i = offset; i < Math.min(ids.length, offset + limit); i++) {
+                uris.add(Selection.uriOf(ids[i]));
+            }
+            return uris;
+        }
+    }
+
+    private static class ListSource extends SlideSource {
+        private final List<Uri> uris;
+
+        ListSource(List<Uri> uris) {
+            this.uris = uris;
+        }
+
+        @Override
+        protected int loadCount() {
+            return uris.size();
+        }
+
+        @Override
+        protected List<Uri> loadPage(int offset, int limit) {
+            return new ArrayList<>(uris.subList(Math.min(offset, uris.size()), Math.min(uris.size(), offset + limit)));
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// In-memory inverted index for TagQuery: tag key -> RoaringBitmap of MediaStore ids, and
+// album name -> RoaringBitmap of MediaStore ids. Keying everything by media id lets tags,
+// albums and the whole gallery (for NOT) combine directly; photos from other providers
+// have no media id and are left out of boolean queries.
+//
+// Tags load once and are then updated in place by PhotoTagDao from inside its write
+// transactions, the same way TagDictionary is kept current. Album sets are cheap to
+// rebuild and are simply reloaded on the next query after Room reports an Album or
+// AlbumPhoto change.
+public final class TagBitmapIndex {
+    private static final String TAG = "TagBitmapIndex";
+
+    private static TagBitmapIndex instance;
+
+    private final AppDatabase db;
+    private final GalleryIndex galleryIndex;
+    // All guarded by this
+    private final TreeMap<String, RoaringBitmap> byTag = new TreeMap<>();
+    private boolean tagsLoaded = false;
+    private Map<String, RoaringBitmap> byAlbum;
+    // Bumped on every album invalidation, so a reload that raced one is not installed
+    private int albumVersion = 0;
+    private RoaringBitmap gallery;
+    private int galleryVersion = -1;
+
+    private TagBitmapIndex(Context context) {
+        Context appContext = context.getApplicationContext();
+        this.db = AppDatabase.getDatabase(appContext);
+        this.galleryIndex = GalleryIndex.get(appContext);
+        db.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("Album", "AlbumPhoto") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                synchronized (TagBitmapIndex.this) {
+                    byAlbum = null;
+                    albumVersion++;
+                }
+            }
+        });
+    }
+
+    public static synchronized TagBitmapIndex get(Context context) {
+        if (instance == null) {
+            instance = new TagBitmapIndex(context);
+        }
+        return instance;
+    }
+
+    // Media ids matching query, newest (highest id) first. Loads whatever part of the
+    // index is missing, so call it off the main thread. Throws IllegalArgumentException
+    // for a malformed query.
+    public long[] search(String query) {
+        TagQuery parsed = TagQuery.parse(query);
+        ensureTagsLoaded();
+        Map<String, RoaringBitmap> albums = ensureAlbumsLoaded();
+        int[] ids;
+        synchronized (this) {
+            long start = System.nanoTime();
+            ids = parsed.evaluate(new IndexResolver(albums)).toArray();
+            Log.d(TAG, "Evaluated \"" + query + "\" to " + ids.length + " ids in "
+                    + (System.nanoTime() - start) / 1000 + " us");
+        }
+        long[] newestFirst = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            newestFirst[i] = ids[ids.length - 1 - i];
+        }
+        return newestFirst;
+    }
+
+    // Called by PhotoTagDao inside the transaction that inserted the row
+    static void recordAdded(String tagKey, String photoUri) {
+        TagBitmapIndex index = loadedInstance();
+        if (index != null) index.apply(tagKey, photoUri, true);
+    }
+
+    // Called by PhotoTagDao inside the transaction that deleted the row
+    static void recordRemoved(String tagKey, String photoUri) {
+        TagBitmapIndex index = loadedInstance();
+        if (index != null) index.apply(tagKey, photoUri, false);
+    }
+
+    private static synchronized TagBitmapIndex loadedInstance() {
+        return instance;
+    }
+
+    private synchronized void apply(String tagKey, String photoUri, boolean added) {
+        // Before the load, the load itself will read this edit
+        if (!tagsLoaded) return;
+        int id = mediaIdOf(photoUri);
+        if (id < 0) return;
+        RoaringBitmap bitmap = byTag.get(tagKey);
+        if (added) {
+            if (bitmap == null) {
+                bitmap = new RoaringBitmap();
+                byTag.put(tagKey, bitmap);
+            }
+            bitmap.add(id);
+        } else if (bitmap != null) {
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) byTag.remove(tagKey);
+        }
+    }
+
+    // In a transaction so an edit committing meanwhile is either read here or applied after
+    private void ensureTagsLoaded() {
+        synchronized (this) {
+            if (tagsLoaded) return;
+        }
+        db.runInTransaction(() -> {
+            synchronized (this) {
+                if (tagsLoaded) return;
+                long start = System.nanoTime();
+                int rows = 0;
+                for (PhotoTagDao.TagUri row : db.photoTagDao().getAllTagUris()) {
+                    int id = mediaIdOf(row.uri);
+                    if (id < 0) continue;
+                    RoaringBitmap bitmap = byTag.get(row.tagKey);
+                    if (bitmap == null) {
+                        bitmap = new RoaringBitmap();
+                        byTag.put(row.tagKey, bitmap);
+                    }
+                    bitmap.add(id);
+                    rows++;
+                }
+                tagsLoaded = true;
+                Log.d(TAG, "Indexed " + rows + " tag rows over " + byTag.size() + " tags in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        });
+    }
+
+    // Reads outside the lock: with a single shared connection, holding it while a tag edit
+    // waits for this inside its transaction would deadlock
+    private Map<String, RoaringBitmap> ensureAlbumsLoaded() {
+        while (true) {
+            int version;
+            synchronized (this) {
+                if (byAlbum != null) return byAlbum;
+                version = albumVersion;
+            }
+            Map<String, RoaringBitmap> albums = loadAlbums();
+            synchronized (this) {
+                if (albumVersion == version) {
+                    byAlbum = albums;
+                    return albums;
+                }
+            }
+        }
+    }
+
+    private Map<String, RoaringBitmap> loadAlbums() {
+        Map<String, RoaringBitmap> albums = new HashMap<>();
+        for (AlbumDao.AlbumUri row : db.albumDao().getAllAlbumUris()) {
+            int id = mediaIdOf(row.uri);
+            if (id < 0) continue;
+            String key = PhotoTag.normalize(row.albumName);
+            RoaringBitmap bitmap = albums.get(key);
+            if (bitmap == null) {
+                bitmap = new RoaringBitmap();
+                albums.put(key, bitmap);
+            }
+            bitmap.add(id);
+        }
+        return albums;
+    }
+
+    // Used holding this; albums is the album map current when the query started
+    private final class IndexResolver implements TagQuery.Resolver {
+        private final Map<String, RoaringBitmap> albums;
+
+        IndexResolver(Map<String, RoaringBitmap> albums) {
+            this.albums = albums;
+        }
+
+        @Override
+        public RoaringBitmap tag(String tagKey) {
+            RoaringBitmap bitmap = byTag.get(tagKey);
+            return bitmap != null ? bitmap : new RoaringBitmap();
+        }
+
+        @Override
+        public RoaringBitmap tagPrefix(String prefix) {
+            RoaringBitmap union = new RoaringBitmap();
+            for (RoaringBitmap bitmap : byTag.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+                union = union.or(bitmap);
+            }
+            return union;
+        }
+
+        @Override
+        public RoaringBitmap album(String nameKey) {
+            RoaringBitmap bitmap = albums.get(nameKey);
+            return bitmap != null ? bitmap : new RoaringBitmap();
+        }
+
+        // The gallery as GalleryIndex last saw it, plus anything tagged or filed that it
+        // hasn't caught up with yet
+        @Override
+        public RoaringBitmap all() {
+            GallerySnapshot snapshot = galleryIndex.getSnapshot();
+            if (snapshot != null && snapshot.version != galleryVersion) {
+                gallery = RoaringBitmap.of(snapshot.ids);
+                galleryVersion = snapshot.version;
+            }
+            RoaringBitmap all = gallery != null ? gallery : new RoaringBitmap();
+            for (RoaringBitmap bitmap : byTag.values()) {
+                all = all.or(bitmap);
+            }
+            for (RoaringBitmap bitmap : albums.values()) {
+                all = all.or(bitmap);
+            }
+            return all;
+        }
+    }
+
+    // Media ids are ints in practice; anything else can't be a bitmap member
+    private static int mediaIdOf(String uri) {
+        if (uri == null) return -1;
+        try {
+            long id = MediaMetadata.mediaIdOf(Uri.parse(uri));
+            return id >= 0 && id <= Integer.MAX_VALUE ? (int) id : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.midterm;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Every tag in use with how many photos carry it, for autocomplete. Tag keys are kept in a
+// sorted array, so a prefix is a binary-searched range and completing a keystroke costs
+// two searches plus a scan of the matching range, with no database access.
+//
+// Loaded once from PhotoTag, then kept current by PhotoTagDao, which reports each add and
+// remove from inside its write transaction. Loading runs in a transaction too, so an edit
+// is either part of the loaded counts or applied on top of them, never both.
+//
+// Readers on any thread see an immutable Entries snapshot; edits copy and republish it.
+public final class TagDictionary {
+    private static final TagDictionary instance = new TagDictionary();
+
+    public static final class Completion {
+        public final String tag;
+        public final int uses;
+
+        Completion(String tag, int uses) {
+            this.tag = tag;
+            this.uses = uses;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return tag;
+        }
+    }
+
+    private volatile Entries entries = Entries.EMPTY;
+    // Guarded by this
+    private boolean loadRequested = false;
+    private boolean loaded = false;
+
+    private TagDictionary() {}
+
+    // Starts the one-time load on first use; completions are empty until it finishes
+    public static TagDictionary get(Context context) {
+        instance.ensureLoaded(context.getApplicationContext());
+        return instance;
+    }
+
+    private void ensureLoaded(Context appContext) {
+        synchronized (this) {
+            if (loadRequested) return;
+            loadRequested = true;
+        }
+        AppDatabase db = AppDatabase.getDatabase(appContext);
+        TaskScheduler.execute(TaskScheduler.Lane.UI, () -> db.runInTransaction(() -> {
+            List<PhotoTagDao.TagCount> rows = db.photoTagDao().getTagCounts();
+            synchronized (this) {
+                entries = Entries.of(rows);
+                loaded = true;
+            }
+        }));
+    }
+
+    // Called by PhotoTagDao inside the transaction that inserted the row
+    static void recordAdded(String tagKey, String tag) {
+        instance.apply(tagKey, tag, 1);
+    }
+
+    // Called by PhotoTagDao inside the transaction that deleted the row
+    static void recordRemoved(String tagKey) {
+        instance.apply(tagKey, null, -1);
+    }
+
+    private synchronized void apply(String tagKey, String tag, int delta) {
+        // Before the load, the load itself will read this edit
+        if (!loaded) return;
+        entries = entries.withDelta(tagKey, tag, delta);
+    }
+
+    // Up to limit tags starting with prefix, most used first. Safe on any thread.
+    public List<Completion> complete(String prefix, int limit) {
+        String key = PhotoTag.normalize(prefix);
+        Entries current = entries;
+        if (key.isEmpty() || current.keys.length == 0) return Collections.emptyList();
+
+        int from = current.lowerBound(key);
+        int to = current.lowerBound(key + Character.MAX_VALUE);
+        if (from >= to) return Collections.emptyList();
+
+        // Ranges are short for any real prefix; keep the best limit with an insertion pass
+        int[] best = new int[Math.min(limit, to - from)];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            int uses = current.uses[i];
+            if (size == best.length && uses <= current.uses[best[size - 1]]) continue;
+            int j = size < best.length ? size++ : size - 1;
+            while (j > 0 && current.uses[best[j - 1]] < uses) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = i;
+        }
+        List<Completion> completions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            completions.add(new Completion(current.tags[best[i]], current.uses[best[i]]));
+        }
+        return completions;
+    }
+
+    // Parallel arrays sorted by key
+    private static final class Entries {
+        static final Entries EMPTY = new Entries(new String[0], new String[0], new int[0]);
+
+        final String[] keys;
+        // Spelling shown to the user
+        final String[] tags;
+        final int[] uses;
+
+        Entries(String[] keys, String[] tags, int[] uses) {
+            this.keys = keys;
+            this.tags = tags;
+            this.uses = uses;
+        }
+
+        // Rows come from a GROUP BY tag_key, already unique
+        static Entries of(List<PhotoTagDao.TagCount> rows) {
+            List<PhotoTagDao.TagCount> sorted = new ArrayList<>(rows);
+            sorted.sort((a, b) -> a.tagKey.compareTo(b.tagKey));
+            int n = sorted.size();
+            String[] keys = new String[n];
+            String[] tags = new String[n];
+            int[] uses = new int[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = sorted.get(i).tagKey;
+                tags[i] = sorted.get(i).tag;
+                uses[i] = sorted.get(i).uses;
+            }
+            return new Entries(keys, tags, uses);
+        }
+
+        // First index whose key is >= key
+        int lowerBound(String key) {
+            int lo = 0, hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        Entries withDelta(String key, String tag, int delta) {
+            int i = lowerBound(key);
+            boolean present = i < keys.length && keys[i].equals(key);
+            if (present) {
+                int count = uses[i] + delta;
+                if (count <= 0) {
+                    return without(i);
+                }
+                int[] nextUses = uses.clone();
+                nextUses[i] = count;
+                return new Entries(keys, tags, nextUses);
+            }
+            if (delta <= 0 || tag == null) return this;
+
+            int n = keys.length;
+            String[] nextKeys = new String[n + 1];
+            String[] nextTags = new String[n + 1];
+            int[] nextUses = new int[n + 1];
+            System.arraycopy(keys, 0, nextKeys, 0, i);
+            System.arraycopy(tags, 0, nextTags, 0, i);
+            System.arraycopy(uses, 0, nextUses, 0, i);
+            nextKeys[i] = key;
+            nextTags[i] = tag;
+            nextUses[i] = delta;
+            System.arraycopy(keys, i, nextKeys, i + 1, n - i);
+            System.arraycopy(tags, i, nextTags, i + 1, n - i);
+            System.arraycopy(uses, i, nextUses, i + 1, n - i);
+            return new Entries(nextKeys, nextTags, nextUses);
+        }
+
+        private Entries without(int i) {
+            int n = keys.length;
+            String[] nextKeys = Arrays.copyOf(keys, n - 1);
+            String[] nextTags = Arrays.copyOf(tags, n - 1);
+            int[] nextUses = Arrays.copyOf(uses, n - 1);
+            System.arraycopy(keys, i + 1, nextKeys, i, n - i - 1);
+            System.arraycopy(tags, i + 1, nextTags, i, n - i - 1);
+            System.arraycopy(uses, i + 1, nextUses, i, n - i - 1);
+            return new Entries(nextKeys, nextTags, nextUses);
+        }
+    }
+}
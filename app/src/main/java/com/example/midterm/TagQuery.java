@@ -0,0 +1,254 @@
+package com.example.midterm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Boolean tag queries such as  beach AND family NOT 2019  or  (dog OR cat) album:Vacation
+//
+//   query   := or
+//   or      := and (OR and)*
+//   and     := unary ((AND)? unary | NOT unary)*    adjacent terms are ANDed, "a NOT b" is a AND NOT b
+//   unary   := NOT unary | ( query ) | term
+//   term    := tag | "tag with spaces" | prefix* | album:name | album:"name with spaces"
+//
+// Operators are case-insensitive. Tags and album names are matched exactly after
+// PhotoTag.normalize, except for prefix* terms. Evaluation is bitmap algebra over whatever
+// a Resolver hands out; TagBitmapIndex resolves against its in-memory inverted index.
+final class TagQuery {
+    interface Resolver {
+        RoaringBitmap tag(String tagKey);
+        RoaringBitmap tagPrefix(String prefix);
+        RoaringBitmap album(String nameKey);
+        // Every photo a NOT may subtract from
+        RoaringBitmap all();
+    }
+
+    private enum Kind { AND, OR, NOT, OPEN, CLOSE, TAG, PREFIX, ALBUM }
+
+    private static final class Token {
+        final Kind kind;
+        final String text;
+        // Written as a quoted phrase, album: or prefix*, which plain FTS search can't express
+        final boolean structured;
+
+        Token(Kind kind, String text, boolean structured) {
+            this.kind = kind;
+            this.text = text;
+            this.structured = structured;
+        }
+    }
+
+    private abstract static class Node {
+        abstract RoaringBitmap evaluate(Resolver resolver);
+    }
+
+    private final Node root;
+
+    private TagQuery(Node root) {
+        this.root = root;
+    }
+
+    // True if input uses any operator or term only the boolean engine understands; plain
+    // keyword lists keep going to TagSearchEngine's ranked prefix search
+    static boolean isBoolean(String input) {
+        try {
+            for (Token token : tokenize(input)) {
+                if (token.kind != Kind.TAG || token.structured) return true;
+            }
+        } catch (IllegalArgumentException e) {
+            // Unbalanced quotes and the like; let parse() report it
+            return true;
+        }
+        return false;
+    }
+
+    // Throws IllegalArgumentException with a message fit for the user on a syntax error
+    static TagQuery parse(String input) {
+        Parser parser = new Parser(tokenize(input));
+        if (parser.tokens.isEmpty()) {
+            throw new IllegalArgumentException("Empty query");
+        }
+        Node root = parser.or();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected \"" + parser.tokens.get(parser.position).text + "\"");
+        }
+        return new TagQuery(root);
+    }
+
+    RoaringBitmap evaluate(Resolver resolver) {
+        return root.evaluate(resolver);
+    }
+
+    private static List<Token> tokenize(String input) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int n = input.length();
+        while (i < n) {
+            char c = input.charAt(i);
+            if (isSeparator(c)) {
+                // Commas separate terms like spaces, as in a plain  dog, beach  search
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(Kind.OPEN, "(", true));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(Kind.CLOSE, ")", true));
+                i++;
+            } else {
+                // A word runs to a separator or a parenthesis; quotes inside it may span spaces
+                StringBuilder word = new StringBuilder();
+                boolean quoted = false;
+                while (i < n) {
+                    c = input.charAt(i);
+                    if (c == '"') {
+                        int close = input.indexOf('"', i + 1);
+                        if (close < 0) throw new IllegalArgumentException("Missing closing quote");
+                        word.append(input, i + 1, close);
+                        quoted = true;
+                        i = close + 1;
+                    } else if (isSeparator(c) || c == '(' || c == ')') {
+                        break;
+                    } else {
+                        word.append(c);
+                        i++;
+                    }
+                }
+                tokens.add(wordToken(word.toString(), quoted));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || c == ',';
+    }
+
+    private static Token wordToken(String word, boolean quoted) {
+        if (!quoted) {
+            switch (word.toUpperCase(Locale.ROOT)) {
+                case "AND":
+                    return new Token(Kind.AND, word, true);
+                case "OR":
+                    return new Token(Kind.OR, word, true);
+                case "NOT":
+                    return new Token(Kind.NOT, word, true);
+                default:
+                    break;
+            }
+        }
+        if (word.regionMatches(true, 0, "album:", 0, 6)) {
+            return new Token(Kind.ALBUM, PhotoTag.normalize(word.substring(6)), true);
+        }
+        if (!quoted && word.length() > 1 && word.endsWith("*")) {
+            return new Token(Kind.PREFIX, PhotoTag.normalize(word.substring(0, word.length() - 1)), true);
+        }
+        return new Token(Kind.TAG, PhotoTag.normalize(word), quoted);
+    }
+
+    private static final class Parser {
+        final List<Token> tokens;
+        int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node or() {
+            Node left = and();
+            while (accept(Kind.OR)) {
+                Node l = left;
+                Node r = and();
+                left = new Node() {
+                    @Override
+                    RoaringBitmap evaluate(Resolver resolver) {
+                        return l.evaluate(resolver).or(r.evaluate(resolver));
+                    }
+                };
+            }
+            return left;
+        }
+
+        Node and() {
+            Node left = unary();
+            while (position < tokens.size()) {
+                Kind next = tokens.get(position).kind;
+                if (next == Kind.OR || next == Kind.CLOSE) break;
+                Node l = left;
+                if (accept(Kind.NOT)) {
+                    Node r = unary();
+                    left = new Node() {
+                        @Override
+                        RoaringBitmap evaluate(Resolver resolver) {
+                            return l.evaluate(resolver).andNot(r.evaluate(resolver));
+                        }
+                    };
+                } else {
+                    accept(Kind.AND);
+                    Node r = unary();
+                    left = new Node() {
+                        @Override
+                        RoaringBitmap evaluate(Resolver resolver) {
+                            return l.evaluate(resolver).and(r.evaluate(resolver));
+                        }
+                    };
+                }
+            }
+            return left;
+        }
+
+        Node unary() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Query ends too early");
+            }
+            Token token = tokens.get(position++);
+            switch (token.kind) {
+                case NOT: {
+                    Node operand = unary();
+                    return new Node() {
+                        @Override
+                        RoaringBitmap evaluate(Resolver resolver) {
+                            return resolver.all().andNot(operand.evaluate(resolver));
+                        }
+                    };
+                }
+                case OPEN: {
+                    Node inner = or();
+                    if (!accept(Kind.CLOSE)) throw new IllegalArgumentException("Missing )");
+                    return inner;
+                }
+                case TAG:
+                    return new Node() {
+                        @Override
+                        RoaringBitmap evaluate(Resolver resolver) {
+                            return resolver.tag(token.text);
+                        }
+                    };
+                case PREFIX:
+                    return new Node() {
+                        @Override
+                        RoaringBitmap evaluate(Resolver resolver) {
+                            return resolver.tagPrefix(token.text);
+                        }
+                    };
+                case ALBUM:
+                    return new Node() {
+                        @Override
+                        RoaringBitmap evaluate(Resolver resolver) {
+                            return resolver.album(token.text);
+                        }
+                    };
+                default:
+                    throw new IllegalArgumentException("Unexpected \"" + token.text + "\"");
+            }
+        }
+
+        private boolean accept(Kind kind) {
+            if (position < tokens.size() && tokens.get(position).kind == kind) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.midterm;
+
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.widget.MultiAutoCompleteTextView;
+
+// Tokenizer for the search header: suggestions complete the term under the cursor, which
+// runs to whitespace, a comma or a parenthesis, so in  dog OR be  only "be" is completed.
+// Picked tags that contain spaces are quoted, so the boolean parser reads them as one term.
+public class TagQueryTokenizer implements MultiAutoCompleteTextView.Tokenizer {
+
+    @Override
+    public int findTokenStart(CharSequence text, int cursor) {
+        int i = cursor;
+        while (i > 0 && !isSeparator(text.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    @Override
+    public int findTokenEnd(CharSequence text, int cursor) {
+        int i = cursor;
+        int length = text.length();
+        while (i < length && !isSeparator(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public CharSequence terminateToken(CharSequence text) {
+        String term = TextUtils.indexOf(text, ' ') >= 0 ? "\"" + text + "\" " : text + " ";
+        if (text instanceof Spanned) {
+            SpannableString terminated = new SpannableString(term);
+            int offset = term.charAt(0) == '"' ? 1 : 0;
+            TextUtils.copySpansFrom((Spanned) text, 0, text.length(), Object.class, terminated, offset);
+            return terminated;
+        }
+        return term;
+    }
+
+    private static boolean isSeparator(char c) {
+        return Character.isWhitespace(c) || c == ',' || c == '(' || c == ')';
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.midterm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+// Full-text search over photo tags backed by the PhotoFts index.
+// Every term is a prefix query and all terms must match ("beach fam" finds
+// photos tagged both "Beach" and "Family"). Results are ranked by a tf-idf
+// score computed from matchinfo, so no row is scanned outside the FTS doclists.
+public class TagSearchEngine {
+    private final PhotoDao photoDao;
+
+    public TagSearchEngine(PhotoDao photoDao) {
+        this.photoDao = photoDao;
+    }
+
+    public List<Photo> search(String input) {
+        List<Photo> results = new ArrayList<>();
+        String matchQuery = buildMatchQuery(input);
+        if (matchQuery.isEmpty()) {
+            return results;
+        }
+
+        List<RankedPhoto> rows = photoDao.searchFts(matchQuery);
+        List<Scored> scored = new ArrayList<>(rows.size());
+        for (RankedPhoto row : rows) {
+            scored.add(new Scored(row.photo, score(row.matchInfo)));
+        }
+        Collections.sort(scored, (a, b) -> {
+            int byScore = Double.compare(b.score, a.score);
+            return byScore != 0 ? byScore : Integer.compare(b.photo.id, a.photo.id);
+        });
+        for (Scored s : scored) {
+            results.add(s.photo);
+        }
+        return results;
+    }
+
+    // Turns free text into an FTS4 query: each token becomes token*, tokens are ANDed.
+    // Anything that is not a letter or digit is treated as a separator, which also keeps
+    // user input from being parsed as FTS operators.
+    static String buildMatchQuery(String input) {
+        if (input == null) return "";
+        StringBuilder query = new StringBuilder();
+        for (String token : input.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            if (query.length() > 0) {
+                query.append(' ');
+            }
+            query.append(token).append('*');
+        }
+        return query.toString();
+    }
+
+    // The photos of previous that still match input, in their existing order. Valid when
+    // previous holds every match of a query input extends: each term of input then extends
+    // a term of that query or is new, so its matches are a subset. Mirrors the FTS
+    // unicode61 tokenizer on Photo.tag: case- and accent-folded words, terms as prefixes.
+    static List<Photo> refine(List<Photo> previous, String input) {
+        List<String> terms = foldedTokens(input);
+        List<Photo> refined = new ArrayList<>();
+        if (terms.isEmpty()) {
+            return refined;
+        }
+        for (Photo photo : previous) {
+            List<String> words = foldedTokens(photo.tag);
+            boolean matchesAll = true;
+            for (String term : terms) {
+                boolean found = false;
+                for (String word : words) {
+                    if (word.startsWith(term)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    matchesAll = false;
+                    break;
+                }
+            }
+            if (matchesAll) {
+                refined.add(photo);
+            }
+        }
+        return refined;
+    }
+
+    private static List<String> foldedTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        String folded = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "");
+        for (String token : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    // matchinfo('pcnx'): phrase count, column count, row count, then for every
+    // (phrase, column) pair: hits in this row, hits in all rows, rows with a hit
+    static double score(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 12) return 0;
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+        int rows = Math.max(1, buffer.getInt(8));
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                int base = 12 + (p * columns + c) * 12;
+                if (base + 12 > matchInfo.length) break;
+                int hitsInRow = buffer.getInt(base);
+                int rowsWithHit = buffer.getInt(base + 8);
+                if (hitsInRow == 0 || rowsWithHit == 0) continue;
+                double idf = Math.log(1.0 + (double) rows / rowsWithHit);
+                score += (hitsInRow / (hitsInRow + 1.0)) * idf;
+            }
+        }
+        return score;
+    }
+
+    private static class Scored {
+        final Photo photo;
+        final double score;
+
+        Scored(Photo photo, double score) {
+            this.photo = photo;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.midterm;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Drop-down for tag inputs: the most used tags starting with what has been typed, each with
+// its photo count. Picking one inserts the tag's own spelling.
+public class TagSuggestionAdapter extends BaseAdapter implements Filterable {
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private final LayoutInflater inflater;
+    private final TagDictionary dictionary;
+    private List<TagDictionary.Completion> completions = Collections.emptyList();
+
+    public TagSuggestionAdapter(Context context) {
+        this.inflater = LayoutInflater.from(context);
+        this.dictionary = TagDictionary.get(context);
+    }
+
+    @Override
+    public int getCount() {
+        return completions.size();
+    }
+
+    @Override
+    public TagDictionary.Completion getItem(int position) {
+        return completions.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        TextView view = (TextView) (convertView != null ? convertView
+                : inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false));
+        TagDictionary.Completion completion = getItem(position);
+        view.setText(completion.tag + " (" + completion.uses + ")");
+        return view;
+    }
+
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+
+    // The dictionary is in memory, so filtering is a lookup rather than a query
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            List<TagDictionary.Completion> found = constraint != null
+                    ? dictionary.complete(constraint.toString(), MAX_SUGGESTIONS)
+                    : Collections.emptyList();
+            results.values = found;
+            results.count = found.size();
+            return results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            completions = results.values != null
+                    ? new ArrayList<>((List<TagDictionary.Completion>) results.values)
+                    : Collections.emptyList();
+            if (completions.isEmpty()) {
+                notifyDataSetInvalidated();
+            } else {
+                notifyDataSetChanged();
+            }
+        }
+
+        @Override
+        public CharSequence convertResultToString(Object resultValue) {
+            return ((TagDictionary.Completion) resultValue).tag;
+        }
+    };
+}
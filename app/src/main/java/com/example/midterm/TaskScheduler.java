@@ -0,0 +1,312 @@
+package com.example.midterm;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The app's only pool of worker threads. Work goes into one of three lanes:
+//   UI         - queries a screen is waiting on (album lists, search, tag panels)
+//   VISIBLE    - loads for what is on screen (tag blocks, gallery pages, zoom tiles)
+//   BACKGROUND - indexing and sync that nobody is waiting on
+// UI and VISIBLE share FOREGROUND_THREADS threads and a priority queue, so a query the
+// user is waiting on overtakes queued cell loads. BACKGROUND runs on its own threads at
+// background OS priority, so indexing can never hold up the foreground lanes.
+//
+// Tasks can be tagged with an owner (an activity, an adapter, a view). cancelAll(owner)
+// takes its queued tasks out of their queues and flags running ones, which can poll
+// isCancelled(). Writes that must land, such as tag and album edits, are submitted
+// without an owner.
+public final class TaskScheduler {
+    private static final String TAG = "TaskScheduler";
+    private static final int FOREGROUND_THREADS = 3;
+    private static final int BACKGROUND_THREADS = 1;
+    // Log lane metrics every LOG_INTERVAL tasks
+    private static final int LOG_INTERVAL = 500;
+
+    public enum Lane { UI, VISIBLE, BACKGROUND }
+
+    private static final AtomicLong sequence = new AtomicLong();
+    private static final AtomicInteger submitted = new AtomicInteger();
+    private static final LaneStats[] stats = {new LaneStats(), new LaneStats(), new LaneStats()};
+    private static final ThreadLocal<Task> currentTask = new ThreadLocal<>();
+    // Owner -> its unfinished tasks
+    private static final Map<Object, Set<Task>> tasksByOwner = new IdentityHashMap<>();
+
+    private static final ThreadPoolExecutor foregroundPool = new ThreadPoolExecutor(
+            FOREGROUND_THREADS, FOREGROUND_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(), threadFactory("fg", Process.THREAD_PRIORITY_DEFAULT));
+    private static final ThreadPoolExecutor backgroundPool = new ThreadPoolExecutor(
+            BACKGROUND_THREADS, BACKGROUND_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), threadFactory("bg", Process.THREAD_PRIORITY_BACKGROUND));
+
+    private TaskScheduler() {}
+
+    public static Task execute(Lane lane, Runnable work) {
+        return execute(lane, null, work);
+    }
+
+    public static Task execute(Lane lane, @Nullable Object owner, Runnable work) {
+        Task task = new Task(lane, owner, work);
+        register(task);
+        dispatch(task);
+        return task;
+    }
+
+    // Runs tasks one at a time, in submission order, on the given lane. For state that is
+    // confined to one worker at a time, like an open cursor or a sync watermark.
+    public static SerialQueue serial(Lane lane) {
+        return new SerialQueue(lane);
+    }
+
+    // Drops queued tasks of owner and flags its running ones as cancelled
+    public static void cancelAll(Object owner) {
+        Set<Task> tasks;
+        synchronized (tasksByOwner) {
+            tasks = tasksByOwner.remove(owner);
+        }
+        if (tasks == null) return;
+        for (Task task : tasks) {
+            task.cancel();
+        }
+    }
+
+    // True inside a task whose owner was cancelled; long loops should stop early
+    public static boolean isCancelled() {
+        Task task = currentTask.get();
+        return task != null && task.cancelled;
+    }
+
+    public static String metrics() {
+        StringBuilder sb = new StringBuilder("Tasks");
+        for (Lane lane : Lane.values()) {
+            LaneStats s = stats[lane.ordinal()];
+            sb.append(' ').append(lane).append("[queued=").append(s.queued.get())
+                    .append(" peak=").append(s.peakQueued.get())
+                    .append(" running=").append(s.running.get())
+                    .append(" done=").append(s.completed.get())
+                    .append(" cancelled=").append(s.cancelled.get())
+                    .append(" maxWaitMs=").append(s.maxWaitMs.get()).append(']');
+        }
+        return sb.toString();
+    }
+
+    private static void register(Task task) {
+        if (task.owner == null) return;
+        synchronized (tasksByOwner) {
+            Set<Task> tasks = tasksByOwner.get(task.owner);
+            if (tasks == null) {
+                tasks = Collections.newSetFromMap(new IdentityHashMap<>());
+                tasksByOwner.put(task.owner, tasks);
+            }
+            tasks.add(task);
+        }
+    }
+
+    private static void unregister(Task task) {
+        if (task.owner == null) return;
+        synchronized (tasksByOwner) {
+            Set<Task> tasks = tasksByOwner.get(task.owner);
+            if (tasks != null && tasks.remove(task) && tasks.isEmpty()) {
+                tasksByOwner.remove(task.owner);
+            }
+        }
+    }
+
+    private static void dispatch(Task task) {
+        LaneStats s = stats[task.lane.ordinal()];
+        s.peakQueued.accumulateAndGet(s.queued.incrementAndGet(), Math::max);
+        submit(task, task.lane);
+        if (submitted.incrementAndGet() % LOG_INTERVAL == 0) {
+            Log.d(TAG, metrics());
+        }
+    }
+
+    private static void submit(Prioritized runnable, Lane lane) {
+        if (lane == Lane.BACKGROUND) {
+            backgroundPool.execute(runnable);
+        } else {
+            foregroundPool.execute(runnable);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name, int osPriority) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(osPriority);
+                runnable.run();
+            }, "tasks-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class LaneStats {
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicInteger peakQueued = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+        final AtomicLong maxWaitMs = new AtomicLong();
+    }
+
+    // Ordered by lane, then FIFO within a lane
+    private abstract static class Prioritized implements Runnable, Comparable<Prioritized> {
+        final long order = sequence.getAndIncrement();
+
+        abstract Lane priorityLane();
+
+        @Override
+        public int compareTo(@NonNull Prioritized other) {
+            int byLane = Integer.compare(priorityLane().ordinal(), other.priorityLane().ordinal());
+            return byLane != 0 ? byLane : Long.compare(order, other.order);
+        }
+    }
+
+    public static final class Task extends Prioritized {
+        final Lane lane;
+        @Nullable final Object owner;
+        private final Runnable work;
+        // The queue holding the task until it runs, when that is not the lane's pool
+        @Nullable private final SerialQueue serialQueue;
+        private final long enqueuedAt = System.nanoTime();
+        private volatile boolean cancelled;
+
+        Task(Lane lane, @Nullable Object owner, Runnable work) {
+            this(lane, owner, work, null);
+        }
+
+        Task(Lane lane, @Nullable Object owner, Runnable work, @Nullable SerialQueue serialQueue) {
+            this.lane = lane;
+            this.owner = owner;
+            this.work = work;
+            this.serialQueue = serialQueue;
+        }
+
+        @Override
+        Lane priorityLane() {
+            return lane;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            // A queued task is taken out now, so cancelled loads don't pile up behind the
+            // workers. One that was already dequeued sees the flag in run() instead.
+            boolean removed = serialQueue != null
+                    ? serialQueue.remove(this)
+                    : (lane == Lane.BACKGROUND ? backgroundPool : foregroundPool).remove(this);
+            if (removed) {
+                LaneStats s = stats[lane.ordinal()];
+                s.queued.decrementAndGet();
+                s.cancelled.incrementAndGet();
+                unregister(this);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            LaneStats s = stats[lane.ordinal()];
+            s.queued.decrementAndGet();
+            if (cancelled) {
+                s.cancelled.incrementAndGet();
+                unregister(this);
+                return;
+            }
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt);
+            s.maxWaitMs.accumulateAndGet(waitedMs, Math::max);
+            s.running.incrementAndGet();
+            currentTask.set(this);
+            try {
+                work.run();
+            } catch (Throwable t) {
+                // One failing load must not take a shared worker down with it
+                Log.e(TAG, "Task failed on " + lane, t);
+            } finally {
+                currentTask.remove();
+                s.running.decrementAndGet();
+                s.completed.incrementAndGet();
+                unregister(this);
+            }
+        }
+    }
+
+    public static final class SerialQueue {
+        private final Lane lane;
+        private final ArrayDeque<Task> pending = new ArrayDeque<>();
+        private boolean active;
+
+        SerialQueue(Lane lane) {
+            this.lane = lane;
+        }
+
+        public Task execute(Runnable work) {
+            return execute(null, work);
+        }
+
+        public Task execute(@Nullable Object owner, Runnable work) {
+            Task task = new Task(lane, owner, work, this);
+            register(task);
+            // Depth counts the queue's tasks, not the step that drains them
+            LaneStats s = stats[lane.ordinal()];
+            s.peakQueued.accumulateAndGet(s.queued.incrementAndGet(), Math::max);
+            synchronized (pending) {
+                pending.add(task);
+                if (active) return task;
+                active = true;
+            }
+            submit(new Step(), lane);
+            return task;
+        }
+
+        private boolean remove(Task task) {
+            synchronized (pending) {
+                return pending.remove(task);
+            }
+        }
+
+        // Runs the next pending task, then re-submits itself while work remains
+        private final class Step extends Prioritized {
+            @Override
+            Lane priorityLane() {
+                return lane;
+            }
+
+            @Override
+            public void run() {
+                Task next;
+                synchronized (pending) {
+                    next = pending.poll();
+                }
+                if (next != null) {
+                    next.run();
+                }
+                synchronized (pending) {
+                    if (pending.isEmpty()) {
+                        active = false;
+                        return;
+                    }
+                }
+                submit(new Step(), lane);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.midterm;
+
+import androidx.room.ColumnInfo;
+
+// Projection of Photo used for bulk tag lookups
+public class UriTag {
+    @ColumnInfo(name = "uri")
+    public String uri;
+
+    @ColumnInfo(name = "tag")
+    public String tag;
+}
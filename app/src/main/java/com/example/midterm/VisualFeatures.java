@@ -0,0 +1,74 @@
+package com.example.midterm;
+
+import android.graphics.Bitmap;
+
+// Compact visual signature of an image, LENGTH bytes, compared with L1 distance:
+//   - a 64-bin colour histogram (4 levels per RGB channel), scaled to 0-255
+//   - a 4x4 grid of mean brightness, i.e. the coarse layout
+//   - a 4x4 grid of mean gradient magnitude, i.e. where the edges and texture are
+// L1 over bytes is a true metric, which is what lets SimilarityIndex prune with a VP-tree.
+final class VisualFeatures {
+    static final int LENGTH = 64 + 16 + 16;
+    private static final int SIDE = 32;
+    private static final int GRID = 4;
+    private static final int CELL = SIDE / GRID;
+
+    private VisualFeatures() {}
+
+    // source is the small decode PerceptualHash.decodeSmall returns
+    static byte[] extract(Bitmap source) {
+        Bitmap scaled = Bitmap.createScaledBitmap(source, SIDE, SIDE, true);
+        int[] pixels = new int[SIDE * SIDE];
+        scaled.getPixels(pixels, 0, SIDE, 0, 0, SIDE, SIDE);
+        if (scaled != source) {
+            scaled.recycle();
+        }
+
+        byte[] features = new byte[LENGTH];
+        int[] histogram = new int[64];
+        int[] luma = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int r = (pixels[i] >> 16) & 0xff;
+            int g = (pixels[i] >> 8) & 0xff;
+            int b = pixels[i] & 0xff;
+            histogram[(r >> 6) << 4 | (g >> 6) << 2 | (b >> 6)]++;
+            luma[i] = (299 * r + 587 * g + 114 * b) / 1000;
+        }
+        // A bin holding a quarter of the pixels saturates; finer detail matters more than that
+        for (int bin = 0; bin < 64; bin++) {
+            features[bin] = (byte) Math.min(255, histogram[bin] * 1024 / pixels.length);
+        }
+
+        for (int gy = 0; gy < GRID; gy++) {
+            for (int gx = 0; gx < GRID; gx++) {
+                int brightness = 0;
+                int edges = 0;
+                for (int y = gy * CELL; y < (gy + 1) * CELL; y++) {
+                    for (int x = gx * CELL; x < (gx + 1) * CELL; x++) {
+                        int p = luma[y * SIDE + x];
+                        brightness += p;
+                        int right = x + 1 < SIDE ? luma[y * SIDE + x + 1] : p;
+                        int down = y + 1 < SIDE ? luma[(y + 1) * SIDE + x] : p;
+                        edges += Math.abs(right - p) + Math.abs(down - p);
+                    }
+                }
+                int cell = gy * GRID + gx;
+                features[64 + cell] = (byte) (brightness / (CELL * CELL));
+                // Mean of two absolute differences; real edges rarely average above 128
+                features[80 + cell] = (byte) Math.min(255, edges / (CELL * CELL));
+            }
+        }
+        return features;
+    }
+
+    // L1 distance between the vectors at offsets a and b of a packed array
+    static int distance(byte[] vectors, int a, int b) {
+        int sum = 0;
+        int ia = a * LENGTH;
+        int ib = b * LENGTH;
+        for (int i = 0; i < LENGTH; i++) {
+            sum += Math.abs((vectors[ia + i] & 0xff) - (vectors[ib + i] & 0xff));
+        }
+        return sum;
+    }
+}
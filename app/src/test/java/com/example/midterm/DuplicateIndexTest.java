@@ -0,0 +1,143 @@
+package com.example.midterm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class DuplicateIndexTest {
+
+    @Test
+    public void forEachPair_matchesBruteForce() {
+        Random random = new Random(7);
+        int n = 2000;
+        long[] hashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            // Every fourth hash is a noisy copy of an earlier one, at up to 12 bits
+            hashes[i] = i > 0 && i % 4 == 0
+                    ? flipBits(hashes[random.nextInt(i)], random.nextInt(13), random)
+                    : random.nextLong();
+        }
+
+        for (int radius = 0; radius <= MultiIndexHash.MAX_RADIUS; radius++) {
+            Set<Long> expected = new HashSet<>();
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    if (Long.bitCount(hashes[a] ^ hashes[b]) <= radius) expected.add(pairKey(a, b));
+                }
+            }
+            Set<Long> found = new HashSet<>();
+            int r = radius;
+            new MultiIndexHash(hashes).forEachPair(radius, (a, b, distance) -> {
+                assertTrue(a < b);
+                assertEquals(Long.bitCount(hashes[a] ^ hashes[b]), distance);
+                assertTrue(distance <= r);
+                // Each pair exactly once
+                assertTrue(found.add(pairKey(a, b)));
+            });
+            assertEquals("radius " + radius, expected, found);
+        }
+    }
+
+    @Test
+    public void forEachPair_identicalHashesPairOnce() {
+        long[] hashes = {42L, 42L, 42L, ~42L};
+        List<Long> pairs = new ArrayList<>();
+        new MultiIndexHash(hashes).forEachPair(MultiIndexHash.MAX_RADIUS,
+                (a, b, distance) -> pairs.add(pairKey(a, b)));
+        assertEquals(3, pairs.size());
+        assertTrue(pairs.containsAll(Arrays.asList(pairKey(0, 1), pairKey(0, 2), pairKey(1, 2))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void forEachPair_rejectsRadiusBeyondPigeonhole() {
+        new MultiIndexHash(new long[]{1L, 2L}).forEachPair(MultiIndexHash.MAX_RADIUS + 1,
+                (a, b, distance) -> {});
+    }
+
+    @Test
+    public void group_linksNearCopiesAndOrdersGroups() {
+        Random random = new Random(11);
+        long base1 = random.nextLong();
+        long base2 = random.nextLong();
+        long d1 = random.nextLong();
+        long d2 = random.nextLong();
+        long[] ids = {10, 11, 12, 20, 21, 30, 40};
+        long[] pHashes = {
+                base1,
+                flipBits(base1, 3, random),
+                flipBits(base1, DuplicateIndex.PHASH_RADIUS, random),
+                base2,
+                flipBits(base2, 2, random),
+                // Same pHash layout as base2 but a different picture by dHash
+                base2,
+                random.nextLong(),
+        };
+        long[] dHashes = {
+                d1,
+                flipBits(d1, 5, random),
+                flipBits(d1, DuplicateIndex.DHASH_RADIUS, random),
+                d2,
+                flipBits(d2, 1, random),
+                ~d2,
+                random.nextLong(),
+        };
+
+        List<long[]> groups = DuplicateIndex.group(ids, pHashes, dHashes);
+
+        assertEquals(2, groups.size());
+        // Largest first, newest id first inside a group
+        assertArrayEquals(new long[]{12, 11, 10}, groups.get(0));
+        assertArrayEquals(new long[]{21, 20}, groups.get(1));
+    }
+
+    @Test
+    public void group_isTransitive() {
+        long a = 0L;
+        long b = flipBits(a, 0, 6);
+        // c is 6 bits from b but 12 from a, so it only joins through b
+        long c = flipBits(b, 6, 6);
+        long[] ids = {1, 2, 3};
+        long[] hashes = {a, b, c};
+
+        List<long[]> groups = DuplicateIndex.group(ids, hashes, hashes);
+
+        assertEquals(1, groups.size());
+        assertArrayEquals(new long[]{3, 2, 1}, groups.get(0));
+    }
+
+    @Test
+    public void group_emptyAndSingletons() {
+        assertTrue(DuplicateIndex.group(new long[0], new long[0], new long[0]).isEmpty());
+        long[] ids = {1, 2};
+        long[] hashes = {0L, -1L};
+        assertTrue(DuplicateIndex.group(ids, hashes, hashes).isEmpty());
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) a << 32) | b;
+    }
+
+    // Flips count distinct random bits of hash
+    private static long flipBits(long hash, int count, Random random) {
+        long mask = 0;
+        while (Long.bitCount(mask) < count) {
+            mask |= 1L << random.nextInt(64);
+        }
+        return hash ^ mask;
+    }
+
+    // Flips the count bits starting at from
+    private static long flipBits(long hash, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            hash ^= 1L << i;
+        }
+        return hash;
+    }
+}
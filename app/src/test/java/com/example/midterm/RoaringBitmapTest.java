@@ -0,0 +1,176 @@
+package com.example.midterm;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class RoaringBitmapTest {
+    // Containers switch between sorted arrays and bitmaps at this many values per chunk
+    private static final int ARRAY_MAX = 4096;
+
+    @Test
+    public void addRemoveContains_matchTreeSet() {
+        Random random = new Random(1);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // Dense enough in chunk 0 to cross the array/bitmap threshold both ways
+        for (int step = 0; step < 40_000; step++) {
+            int value = random.nextInt(4) == 0 ? random.nextInt(1 << 20) : random.nextInt(10_000);
+            if (step > 20_000 && random.nextBoolean()) {
+                bitmap.remove(value);
+                expected.remove(value);
+            } else {
+                bitmap.add(value);
+                expected.add(value);
+            }
+        }
+        assertSameMembers(expected, bitmap);
+        for (int i = 0; i < 1000; i++) {
+            int value = random.nextInt(1 << 20);
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+    }
+
+    @Test
+    public void containerConvertsAtThreshold() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i <= ARRAY_MAX; i++) {
+            bitmap.add(i * 3);
+            expected.add(i * 3);
+        }
+        assertSameMembers(expected, bitmap);
+        // Back below the threshold, and then down to nothing
+        bitmap.remove(0);
+        bitmap.remove(3);
+        expected.remove(0);
+        expected.remove(3);
+        assertSameMembers(expected, bitmap);
+        for (int value : expected) {
+            bitmap.remove(value);
+        }
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.cardinality());
+        assertArrayEquals(new int[0], bitmap.toArray());
+    }
+
+    @Test
+    public void addAndRemoveAreIdempotent() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(7);
+        bitmap.add(7);
+        assertEquals(1, bitmap.cardinality());
+        bitmap.remove(8);
+        bitmap.remove(1 << 20);
+        assertEquals(1, bitmap.cardinality());
+        bitmap.remove(7);
+        bitmap.remove(7);
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    public void setOperations_matchTreeSetAcrossContainerKinds() {
+        Random random = new Random(2);
+        // Values per chunk on either side of ARRAY_MAX, so every pairing of array and
+        // bitmap containers comes up, and results land on both sides of the threshold
+        int[] sizes = {0, 1, 100, ARRAY_MAX - 1, ARRAY_MAX, ARRAY_MAX + 1, 3000, 20_000, 60_000};
+        for (int a : sizes) {
+            for (int b : sizes) {
+                TreeSet<Integer> setA = randomSet(random, a);
+                TreeSet<Integer> setB = randomSet(random, b);
+                RoaringBitmap bitmapA = bitmapOf(setA);
+                RoaringBitmap bitmapB = bitmapOf(setB);
+                String label = a + " x " + b;
+
+                TreeSet<Integer> and = new TreeSet<>(setA);
+                and.retainAll(setB);
+                TreeSet<Integer> or = new TreeSet<>(setA);
+                or.addAll(setB);
+                TreeSet<Integer> andNot = new TreeSet<>(setA);
+                andNot.removeAll(setB);
+
+                assertSameMembers(label + " and", and, bitmapA.and(bitmapB));
+                assertSameMembers(label + " or", or, bitmapA.or(bitmapB));
+                assertSameMembers(label + " andNot", andNot, bitmapA.andNot(bitmapB));
+                // Inputs are left untouched
+                assertSameMembers(label + " a", setA, bitmapA);
+                assertSameMembers(label + " b", setB, bitmapB);
+            }
+        }
+    }
+
+    @Test
+    public void setOperations_resultsCanBeMutated() {
+        RoaringBitmap a = new RoaringBitmap();
+        RoaringBitmap b = new RoaringBitmap();
+        for (int i = 0; i < 3000; i++) {
+            a.add(i);
+            b.add(i + 2000);
+        }
+        // 5000 values: two array containers merged into a bitmap
+        RoaringBitmap union = a.or(b);
+        union.add(100_000);
+        union.remove(0);
+        assertEquals(5000, union.cardinality());
+        assertFalse(a.contains(100_000));
+        assertTrue(a.contains(0));
+
+        RoaringBitmap copy = a.andNot(new RoaringBitmap());
+        copy.add(5000);
+        assertFalse(a.contains(5000));
+    }
+
+    @Test
+    public void of_skipsValuesOutsideIntRange() {
+        RoaringBitmap bitmap = RoaringBitmap.of(new long[]{-1, 0, 5, 1L << 40, Integer.MAX_VALUE, 5});
+        assertArrayEquals(new int[]{0, 5, Integer.MAX_VALUE}, bitmap.toArray());
+    }
+
+    @Test
+    public void toArray_isAscendingAcrossChunks() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int[] values = {Integer.MAX_VALUE, 1 << 16, 65535, 0, (1 << 16) + 1, 3 << 16};
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        assertArrayEquals(new int[]{0, 65535, 1 << 16, (1 << 16) + 1, 3 << 16, Integer.MAX_VALUE},
+                bitmap.toArray());
+    }
+
+    // size values spread over three chunks, most of them in the first
+    private static TreeSet<Integer> randomSet(Random random, int size) {
+        TreeSet<Integer> set = new TreeSet<>();
+        while (set.size() < size) {
+            int chunk = random.nextInt(10) < 8 ? 0 : 1 + random.nextInt(2);
+            set.add((chunk << 16) | random.nextInt(1 << 16));
+        }
+        return set;
+    }
+
+    private static RoaringBitmap bitmapOf(TreeSet<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private static void assertSameMembers(TreeSet<Integer> expected, RoaringBitmap actual) {
+        assertSameMembers("", expected, actual);
+    }
+
+    private static void assertSameMembers(String message, TreeSet<Integer> expected, RoaringBitmap actual) {
+        assertEquals(message, expected.size(), actual.cardinality());
+        assertEquals(message, expected.isEmpty(), actual.isEmpty());
+        int[] values = actual.toArray();
+        assertEquals(message, expected.size(), values.length);
+        Iterator<Integer> iterator = expected.iterator();
+        for (int value : values) {
+            assertEquals(message, (long) iterator.next(), value);
+        }
+    }
+}
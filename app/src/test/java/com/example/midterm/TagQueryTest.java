@@ -0,0 +1,191 @@
+package com.example.midterm;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TagQueryTest {
+    // Photos 1-8: 1 dog beach, 2 dog, 3 beach, 4 cat, 5 cat beach, 6 new york, 7 dogsled, 8 none
+    private final Resolver resolver = new Resolver();
+
+    public TagQueryTest() {
+        resolver.tag("dog", 1, 2);
+        resolver.tag("beach", 1, 3, 5);
+        resolver.tag("cat", 4, 5);
+        resolver.tag("new york", 6);
+        resolver.tag("dogsled", 7);
+        resolver.tag("or", 8);
+        resolver.album("vacation", 1, 3, 6);
+        resolver.album("summer 2019", 5, 7);
+        resolver.all = bitmap(1, 2, 3, 4, 5, 6, 7, 8);
+    }
+
+    @Test
+    public void singleTag() {
+        assertMatches("dog", 1, 2);
+        assertMatches("Dog", 1, 2);
+        assertMatches("unknown");
+    }
+
+    @Test
+    public void operatorsAreCaseInsensitive() {
+        assertMatches("dog or cat", 1, 2, 4, 5);
+        assertMatches("dog and beach", 1);
+        assertMatches("beach not cat", 1, 3);
+    }
+
+    @Test
+    public void andBindsTighterThanOr() {
+        assertMatches("cat OR dog AND beach", 1, 4, 5);
+        assertMatches("dog AND beach OR cat", 1, 4, 5);
+        assertMatches("(cat OR dog) AND beach", 1, 5);
+    }
+
+    @Test
+    public void adjacentTermsAreAnded() {
+        assertMatches("dog beach", 1);
+        assertMatches("beach cat OR dog", 1, 2, 5);
+        assertMatches("beach (cat OR dog)", 1, 5);
+    }
+
+    @Test
+    public void notBetweenTermsIsAndNot() {
+        assertMatches("beach NOT dog", 3, 5);
+        assertMatches("beach NOT dog NOT cat", 3);
+        assertMatches("beach NOT (dog OR cat)", 3);
+    }
+
+    @Test
+    public void leadingNotSubtractsFromEverything() {
+        assertMatches("NOT beach", 2, 4, 6, 7, 8);
+        assertMatches("NOT NOT beach", 1, 3, 5);
+        assertMatches("NOT beach AND NOT dog", 4, 6, 7, 8);
+        assertMatches("NOT dog OR cat", 3, 4, 5, 6, 7, 8);
+    }
+
+    @Test
+    public void quotedTagsKeepSpacesAndOperatorWords() {
+        assertMatches("\"new york\"", 6);
+        assertMatches("\"New  York\" OR dog", 1, 2, 6);
+        assertMatches("\"or\"", 8);
+        assertMatches("\"not\" OR cat", 4, 5);
+    }
+
+    @Test
+    public void albumTerms() {
+        assertMatches("album:Vacation", 1, 3, 6);
+        assertMatches("album:\"Summer 2019\"", 5, 7);
+        assertMatches("album:vacation beach", 1, 3);
+        assertMatches("beach NOT album:vacation", 5);
+        assertMatches("album:nowhere");
+    }
+
+    @Test
+    public void prefixTerms() {
+        assertMatches("dog*", 1, 2, 7);
+        assertMatches("Do*", 1, 2, 7);
+        assertMatches("dog* NOT dog", 7);
+        // A lone * is a tag, not an empty prefix
+        assertMatches("*");
+    }
+
+    @Test
+    public void commasSeparateTerms() {
+        assertMatches("dog OR beach, ", 1, 2, 3, 5);
+        assertMatches("dog,beach", 1);
+        assertMatches("\"dog,beach\"");
+    }
+
+    @Test
+    public void isBoolean() {
+        assertFalse(TagQuery.isBoolean("dog beach"));
+        assertFalse(TagQuery.isBoolean("dog, beach"));
+        assertTrue(TagQuery.isBoolean("dog OR beach"));
+        assertTrue(TagQuery.isBoolean("not beach"));
+        assertTrue(TagQuery.isBoolean("(dog)"));
+        assertTrue(TagQuery.isBoolean("\"new york\""));
+        assertTrue(TagQuery.isBoolean("album:vacation"));
+        assertTrue(TagQuery.isBoolean("dog*"));
+        assertTrue(TagQuery.isBoolean("\"unclosed"));
+    }
+
+    @Test
+    public void syntaxErrors() {
+        assertSyntaxError("");
+        assertSyntaxError("   ");
+        assertSyntaxError("(dog");
+        assertSyntaxError("dog)");
+        assertSyntaxError("dog OR");
+        assertSyntaxError("dog AND");
+        assertSyntaxError("NOT");
+        assertSyntaxError("OR dog");
+        assertSyntaxError("()");
+        assertSyntaxError("\"new york");
+    }
+
+    private void assertMatches(String query, int... expected) {
+        assertArrayEquals(query, expected, TagQuery.parse(query).evaluate(resolver).toArray());
+    }
+
+    private static void assertSyntaxError(String query) {
+        try {
+            TagQuery.parse(query);
+            fail("Expected a syntax error for \"" + query + "\"");
+        } catch (IllegalArgumentException expected) {
+            assertNotNull(expected.getMessage());
+        }
+    }
+
+    private static RoaringBitmap bitmap(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private static final class Resolver implements TagQuery.Resolver {
+        final Map<String, int[]> tags = new HashMap<>();
+        final Map<String, int[]> albums = new HashMap<>();
+        RoaringBitmap all;
+
+        void tag(String key, int... ids) {
+            tags.put(key, ids);
+        }
+
+        void album(String key, int... ids) {
+            albums.put(key, ids);
+        }
+
+        @Override
+        public RoaringBitmap tag(String tagKey) {
+            int[] ids = tags.get(tagKey);
+            return ids != null ? bitmap(ids) : new RoaringBitmap();
+        }
+
+        @Override
+        public RoaringBitmap tagPrefix(String prefix) {
+            RoaringBitmap result = new RoaringBitmap();
+            for (Map.Entry<String, int[]> entry : tags.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    result = result.or(bitmap(entry.getValue()));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public RoaringBitmap album(String nameKey) {
+            int[] ids = albums.get(nameKey);
+            return ids != null ? bitmap(ids) : new RoaringBitmap();
+        }
+
+        @Override
+        public RoaringBitmap all() {
+            return all;
+        }
+    }
+}